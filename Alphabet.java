@@ -0,0 +1,130 @@
+import java.util.Arrays;
+
+
+public class Alphabet {
+    /*
+     * A set of symbols, where symbol i is vertex i of the graph. The set is stored as a bitmask,
+     * one bit per vertex in as many 64 bit words as needed, so unions and membership tests on
+     * graphs with up to 64 vertices are a single operation on a long.
+     *
+     * The transitions of an automaton are stored in rows with one column per symbol of its alphabet,
+     * in increasing order, so the column of a symbol is the number of symbols below it (indexOf).
+     * The symbols are also kept in an array so the columns can be looked up directly.
+     *
+     * Symbols are only turned into names (a, b, c ...) when an automaton is printed.
+     */
+
+    final long[] words;
+    final int[] symbols;
+
+    private Alphabet(long[] words){
+        this.words = words;
+
+        int size = 0;
+        for(long w : words) size += Long.bitCount(w);
+
+        this.symbols = new int[size];
+        int n = 0;
+        for(int w = 0; w < words.length; w++){
+            for(long bits = words[w]; bits != 0; bits &= bits - 1){
+                symbols[n++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+    }
+
+    public static Alphabet of(int... symbols){
+        int max = -1;
+        for(int s : symbols) max = Math.max(max, s);
+
+        long[] words = new long[(max >> 6) + 1];
+        for(int s : symbols) words[s >> 6] |= 1L << s;
+        return new Alphabet(words);
+    }
+
+    public int size(){
+        return symbols.length;
+    }
+
+    public int symbol(int index){
+        return symbols[index];
+    }
+
+    public int[] symbols(){
+        return symbols.clone();
+    }
+
+    public boolean contains(int symbol){
+        int w = symbol >> 6;
+        return w < words.length && (words[w] & (1L << symbol)) != 0;
+    }
+
+    public int indexOf(int symbol){
+        /**
+         * Returns the column of the symbol in a transition row, or -1 if it is not in the alphabet.
+         */
+
+        if(!contains(symbol)) return -1;
+
+        int w = symbol >> 6;
+        int index = Long.bitCount(words[w] & ((1L << symbol) - 1));
+        for(int i = 0; i < w; i++) index += Long.bitCount(words[i]);
+        return index;
+    }
+
+    public Alphabet union(Alphabet other){
+        long[] longer = words.length >= other.words.length ? words : other.words;
+        long[] shorter = longer == words ? other.words : words;
+
+        long[] union = Arrays.copyOf(longer, longer.length);
+        for(int i = 0; i < shorter.length; i++) union[i] |= shorter[i];
+        return new Alphabet(union);
+    }
+
+    public int unionSize(Alphabet other){
+        int size = 0;
+        for(int i = 0; i < Math.max(words.length, other.words.length); i++){
+            long w1 = i < words.length ? words[i] : 0;
+            long w2 = i < other.words.length ? other.words[i] : 0;
+            size += Long.bitCount(w1 | w2);
+        }
+        return size;
+    }
+
+    public boolean intersects(Alphabet other){
+        for(int i = 0; i < Math.min(words.length, other.words.length); i++){
+            if((words[i] & other.words[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    public int[] symbolMap(Alphabet subAlphabet){
+        /**
+         * Maps the column of every symbol of this alphabet to its column in the sub-alphabet,
+         * or -1 if the symbol is not part of the sub-alphabet.
+         */
+
+        int[] map = new int[symbols.length];
+        for(int i = 0; i < symbols.length; i++) map[i] = subAlphabet.indexOf(symbols[i]);
+        return map;
+    }
+
+    public static String name(int symbol){
+        /**
+         * Returns the name a symbol is printed with. The first 26 vertices are named a to z,
+         * then A to Z and 0 to 9, and every vertex after that gets a letter from Latin Extended-A onwards,
+         * so every symbol is still a single character in the files read by the visualiser.
+         */
+
+        if(symbol < 26) return String.valueOf((char) ('a' + symbol));
+        if(symbol < 52) return String.valueOf((char) ('A' + symbol - 26));
+        if(symbol < 62) return String.valueOf((char) ('0' + symbol - 52));
+        return String.valueOf((char) (0x100 + symbol - 62));
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder sb = new StringBuilder();
+        for(int s : symbols) sb.append(name(s));
+        return sb.toString();
+    }
+}
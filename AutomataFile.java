@@ -0,0 +1,295 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+
+public class AutomataFile {
+    /*
+     * Reads and writes automata in a binary format, so that automata with millions of transitions
+     * can be saved and loaded without turning every transition into a line of text.
+     *
+     * All values are little endian and every section starts on an 8 byte boundary:
+     *
+     *     header        8 ints: magic "AUTM", version, flags, number of states, alphabet size,
+     *                   start state, number of words in the accepting bitset, unused
+     *     alphabet      one int per symbol, the vertex number of each column of the transition table
+     *     accepting     the accepting states as a bitset of longs (empty if every state is accepting)
+     *     transitions   one int per state and symbol, transitions[state * alphabet size + column],
+     *                   holding the target state or a negative number for no transition
+     *
+     * Files are written and read through memory mapped buffers. Reading does not copy anything:
+     * the accepting states and the transitions are looked up directly in the mapped file.
+     *
+     * Running this class converts a binary file to the text format used by the noam simulator:
+     * java AutomataFile automata.bin automata.txt
+     */
+
+    public static final int MAGIC = 'A' | ('U' << 8) | ('T' << 16) | ('M' << 24);
+    public static final int VERSION = 1;
+
+    //Every state is accepting and no accepting bitset is stored
+    public static final int ALL_ACCEPTING = 1;
+
+    static final int HEADER_BYTES = 32;
+
+    //Transitions are mapped in chunks of this many ints, as one mapping can hold at most 2GB
+    static final int CHUNK_BITS = 28;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    final int flags;
+    final int numStates;
+    final int startState;
+    final int[] alphabet;
+    final LongBuffer accepting;
+    final IntBuffer[] transitions;
+
+    AutomataFile(int flags, int numStates, int startState, int[] alphabet, LongBuffer accepting, IntBuffer[] transitions){
+        this.flags = flags;
+        this.numStates = numStates;
+        this.startState = startState;
+        this.alphabet = alphabet;
+        this.accepting = accepting;
+        this.transitions = transitions;
+    }
+
+    public int numStates(){
+        return numStates;
+    }
+
+    public int startState(){
+        return startState;
+    }
+
+    public int alphabetSize(){
+        return alphabet.length;
+    }
+
+    public int symbol(int column){
+        return alphabet[column];
+    }
+
+    public boolean isAccepting(int state){
+        if((flags & ALL_ACCEPTING) != 0) return true;
+        return (accepting.get(state >>> 6) & (1L << state)) != 0;
+    }
+
+    public int transition(int state, int column){
+        long index = (long) state * alphabet.length + column;
+        return transitions[(int) (index >>> CHUNK_BITS)].get((int) (index & (CHUNK_SIZE - 1)));
+    }
+
+    public BitSet acceptingStates(){
+        /**
+         * Returns a copy of the accepting states.
+         */
+
+        if((flags & ALL_ACCEPTING) != 0){
+            BitSet all = new BitSet(numStates);
+            all.set(0, numStates);
+            return all;
+        }
+        return BitSet.valueOf(accepting.duplicate());
+    }
+
+    public int[] transitions(){
+        /**
+         * Returns a copy of the transition table.
+         */
+
+        int[] table = new int[Math.multiplyExact(numStates, alphabet.length)];
+        for(int c = 0; c < transitions.length; c++){
+            transitions[c].duplicate().get(table, c << CHUNK_BITS, transitions[c].limit());
+        }
+        return table;
+    }
+
+    public IntTable table(){
+        /**
+         * Returns the transition table as a read only IntTable over the mapped file, without copying it.
+         * The table stays readable as long as it is used, and closing it does not unmap the file.
+         */
+
+        long tableSize = (long) numStates * alphabet.length;
+        IntBuffer[] pages = new IntBuffer[(int) ((tableSize + IntTable.PAGE_SIZE - 1) >>> IntTable.PAGE_BITS)];
+        for(int p = 0; p < pages.length; p++){
+            long from = (long) p << IntTable.PAGE_BITS;
+            int length = (int) Math.min(IntTable.PAGE_SIZE, tableSize - from);
+            pages[p] = transitions[(int) (from >>> CHUNK_BITS)].slice((int) (from & (CHUNK_SIZE - 1)), length);
+        }
+        return new IntTable(tableSize, pages);
+    }
+
+    public static void write(String fileName, int[] alphabet, int numStates, int startState, BitSet acceptingStates, int[] transitions) throws IOException {
+        write(fileName, alphabet, numStates, startState, acceptingStates, IntTable.of(transitions));
+    }
+
+    public static void write(String fileName, int[] alphabet, int numStates, int startState, BitSet acceptingStates, IntTable transitions) throws IOException {
+        /**
+         * Writes an automaton with states 0 to numStates - 1 to a file.
+         * If acceptingStates is null then every state is accepting.
+         */
+
+        try(FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            write(channel, 0, alphabet, numStates, startState, acceptingStates, transitions);
+        }
+    }
+
+    public static long write(FileChannel channel, long position, int[] alphabet, int numStates, int startState, BitSet acceptingStates, int[] transitions) throws IOException {
+        return write(channel, position, alphabet, numStates, startState, acceptingStates, IntTable.of(transitions));
+    }
+
+    public static long write(FileChannel channel, long position, int[] alphabet, int numStates, int startState, BitSet acceptingStates, IntTable transitions) throws IOException {
+        /**
+         * Writes an automaton into an open file starting at the given position, which has to be a multiple of 8,
+         * so it can be stored inside another file. Returns the position after the automaton.
+         */
+
+        int k = alphabet.length;
+        int flags = acceptingStates == null ? ALL_ACCEPTING : 0;
+        int acceptingWords = acceptingStates == null ? 0 : (numStates + 63) >>> 6;
+        long alphabetBytes = align(4L * k);
+        long transitionsStart = HEADER_BYTES + alphabetBytes + 8L * acceptingWords;
+        long tableSize = (long) numStates * k;
+
+        MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_WRITE, position, transitionsStart);
+        head.order(ByteOrder.LITTLE_ENDIAN);
+        head.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(numStates).putInt(k).putInt(startState).putInt(acceptingWords).putInt(0);
+
+        head.asIntBuffer().put(alphabet);
+        head.position((int) (HEADER_BYTES + alphabetBytes));
+
+        if(acceptingStates != null){
+            long[] words = acceptingStates.toLongArray();
+            head.asLongBuffer().put(words, 0, Math.min(words.length, acceptingWords));
+        }
+
+        for(long from = 0; from < tableSize; from += CHUNK_SIZE){
+            int length = (int) Math.min(CHUNK_SIZE, tableSize - from);
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, position + transitionsStart + 4 * from, 4L * length);
+            transitions.copyTo(from, chunk.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(), length);
+        }
+
+        return position + transitionsStart + 4 * tableSize;
+    }
+
+    public static AutomataFile read(String fileName) throws IOException {
+        /**
+         * Maps a file written by write. The file can be read after it has been closed,
+         * until the returned object is no longer used.
+         */
+
+        try(FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)){
+            return read(channel, 0, fileName);
+        }
+    }
+
+    public static AutomataFile read(FileChannel channel, long position, String fileName) throws IOException {
+        /**
+         * Maps an automaton stored in an open file from the given position.
+         */
+
+        if(channel.size() < position + HEADER_BYTES) throw new IOException(fileName + " is not an automata file");
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, position, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if(header.getInt() != MAGIC) throw new IOException(fileName + " is not an automata file");
+        int version = header.getInt();
+        if(version != VERSION) throw new IOException(fileName + " has unsupported version " + version);
+
+        int flags = header.getInt();
+        int numStates = header.getInt();
+        int k = header.getInt();
+        int startState = header.getInt();
+        int acceptingWords = header.getInt();
+
+        long alphabetBytes = align(4L * k);
+        long transitionsStart = position + HEADER_BYTES + alphabetBytes + 8L * acceptingWords;
+        long tableSize = (long) numStates * k;
+        if(channel.size() < transitionsStart + 4 * tableSize) throw new IOException(fileName + " is truncated");
+
+        ByteBuffer tables = channel.map(FileChannel.MapMode.READ_ONLY, position + HEADER_BYTES, alphabetBytes + 8L * acceptingWords).order(ByteOrder.LITTLE_ENDIAN);
+        int[] alphabet = new int[k];
+        tables.asIntBuffer().get(alphabet);
+        tables.position((int) alphabetBytes);
+        LongBuffer accepting = tables.asLongBuffer();
+
+        IntBuffer[] transitions = new IntBuffer[(int) ((tableSize + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+        for(int c = 0; c < transitions.length; c++){
+            long from = (long) c << CHUNK_BITS;
+            int length = (int) Math.min(CHUNK_SIZE, tableSize - from);
+            transitions[c] = channel.map(FileChannel.MapMode.READ_ONLY, transitionsStart + 4 * from, 4L * length).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+
+        return new AutomataFile(flags, numStates, startState, alphabet, accepting, transitions);
+    }
+
+    public void writeText(String fileName) throws IOException {
+        /**
+         * Writes the automaton in the text format of the noam simulator,
+         * https://ivanzuzak.info/noam/webapps/fsm_simulator/
+         */
+
+        int k = alphabet.length;
+
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))){
+            writer.write("#states");
+            writer.newLine();
+            for(int s = 0; s < numStates; s++){
+                writer.write(Integer.toString(s));
+                writer.newLine();
+            }
+
+            writer.write("#initial");
+            writer.newLine();
+            writer.write(Integer.toString(startState));
+            writer.newLine();
+
+            writer.write("#accepting");
+            writer.newLine();
+            for(int s = 0; s < numStates; s++){
+                if(!isAccepting(s)) continue;
+                writer.write(Integer.toString(s));
+                writer.newLine();
+            }
+
+            writer.write("#alphabet");
+            writer.newLine();
+            for(int a : alphabet){
+                writer.write(Alphabet.name(a));
+                writer.newLine();
+            }
+
+            writer.write("#transitions");
+            for(int s = 0; s < numStates; s++){
+                for(int a = 0; a < k; a++){
+                    int t = transition(s, a);
+                    if(t < 0) continue;
+                    writer.newLine();
+                    writer.write(s + ":" + Alphabet.name(alphabet[a]) + ">" + t);
+                }
+            }
+        }
+    }
+
+    static long align(long bytes){
+        return (bytes + 7) & ~7L;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length != 2){
+            System.out.println("Usage: java AutomataFile <binary file> <text file>");
+            return;
+        }
+
+        read(args[0]).writeText(args[1]);
+    }
+}
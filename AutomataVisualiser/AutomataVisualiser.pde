@@ -22,6 +22,9 @@
 
 
 import java.util.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 
 float camx, camy;
 float scale = 1;
@@ -42,7 +45,9 @@ void setup() {
   camx = 0;
   camy = 0;
 
-  states = readFile("automata.txt");
+  //The combiner programs save automata.bin, automata.txt is still read if there is no binary file
+  if (new File(sketchPath("automata.bin")).exists()) states = readBinaryFile("automata.bin");
+  else states = readFile("automata.txt");
 
   current = new ArrayList();
 }
@@ -460,38 +465,66 @@ List<State> readFile(String filename) {
       automata.get(state2).incomingTransitions.add(automata.get(state1));
     }
 
-    //Arange the states
-    List<State> seen = new ArrayList();
-    seen.add(startState);
+    arrangeStates(automata);
 
-    List<List<State>> order = new ArrayList();
-    List<State> next = new ArrayList();
-    next.add(startState);
+    reader.close();
+  }
+  catch (IOException e) {
+    e.printStackTrace();
+    exit();
+    return null;
+  }
 
-    while (!next.isEmpty()) {
-      order.add(next);
-      next = new ArrayList();
+  return new ArrayList(automata.values());
+}
 
-      for (State s : order.get(order.size()-1)) {
-        for (State n : s.transitions.values()) {
-          if (!seen.contains(n)) {
-            seen.add(n);
-            next.add(n);
-          }
-        }
-      }
+List<State> readBinaryFile(String filename) {
+  //Reads the binary format written by AutomataFile.java, see that file for the layout
+  Map<String, State> automata = new HashMap();
+
+  try (FileChannel channel = FileChannel.open(Paths.get(sketchPath(filename)), StandardOpenOption.READ)) {
+    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+    int magic = buffer.getInt();
+    int version = buffer.getInt();
+    if (magic != ('A' | ('U' << 8) | ('T' << 16) | ('M' << 24)) || version != 1) throw new RuntimeException("Error while reading file - not an automata file");
+
+    int flags = buffer.getInt();
+    int numStates = buffer.getInt();
+    int k = buffer.getInt();
+    int start = buffer.getInt();
+    int acceptingWords = buffer.getInt();
+    buffer.getInt();
+
+    char[] symbols = new char[k];
+    for (int a = 0; a < k; a++) symbols[a] = symbolName(buffer.getInt());
+    buffer.position(32 + ((4 * k + 7) & ~7));
+
+    long[] accepting = new long[acceptingWords];
+    for (int i = 0; i < acceptingWords; i++) accepting[i] = buffer.getLong();
+
+    //Read in the states
+    State[] byNumber = new State[numStates];
+    for (int s = 0; s < numStates; s++) {
+      byNumber[s] = new State(color(0));
+      byNumber[s].accepting = (flags & 1) != 0 || (accepting[s >>> 6] & (1L << s)) != 0;
+      automata.put(Integer.toString(s), byNumber[s]);
     }
+    startState = byNumber[start];
 
-    for (int i = 0; i < order.size(); i++) {
-      for (int j = 0; j < order.get(i).size(); j++) {
-        order.get(i).get(j).x = i * 200 + random(100) - 50;
-        order.get(i).get(j).y = j * 200 - (order.get(i).size() * 100);
+    //Read in the transitions
+    IntBuffer transitions = buffer.asIntBuffer();
+    for (int s = 0; s < numStates; s++) {
+      for (int a = 0; a < k; a++) {
+        int t = transitions.get(s * k + a);
+        if (t < 0) continue;
+
+        byNumber[s].transitions.put(symbols[a], byNumber[t]);
+        byNumber[t].incomingTransitions.add(byNumber[s]);
       }
     }
 
-    colourGroups(automata);
-
-    reader.close();
+    arrangeStates(automata);
   }
   catch (IOException e) {
     e.printStackTrace();
@@ -502,35 +535,127 @@ List<State> readFile(String filename) {
   return new ArrayList(automata.values());
 }
 
-void colourGroups(Map<String, State> automata) {
-  //https://en.wikipedia.org/wiki/Kosaraju%27s_algorithm
+char symbolName(int symbol) {
+  //The same names as Alphabet.name in the combiner programs
+  if (symbol < 26) return (char) ('a' + symbol);
+  if (symbol < 52) return (char) ('A' + symbol - 26);
+  if (symbol < 62) return (char) ('0' + symbol - 52);
+  return (char) (0x100 + symbol - 62);
+}
+
+void arrangeStates(Map<String, State> automata) {
+  //Arange the states
+  List<State> seen = new ArrayList();
+  seen.add(startState);
 
-  List<State> L = new ArrayList();
+  List<List<State>> order = new ArrayList();
+  List<State> next = new ArrayList();
+  next.add(startState);
 
-  Map<State, Boolean> visited = new HashMap();
-  for (State s : automata.values()) {
-    visited.put(s, false);
+  while (!next.isEmpty()) {
+    order.add(next);
+    next = new ArrayList();
+
+    for (State s : order.get(order.size()-1)) {
+      for (State n : s.transitions.values()) {
+        if (!seen.contains(n)) {
+          seen.add(n);
+          next.add(n);
+        }
+      }
+    }
   }
 
-  for (State s : automata.values()) {
-    visit(s, visited, L);
+  for (int i = 0; i < order.size(); i++) {
+    for (int j = 0; j < order.get(i).size(); j++) {
+      order.get(i).get(j).x = i * 200 + random(100) - 50;
+      order.get(i).get(j).y = j * 200 - (order.get(i).size() * 100);
+    }
   }
 
-  for (State s : automata.values()) {
-    visited.put(s, false);
+  colourGroups(automata);
+}
+
+void colourGroups(Map<String, State> automata) {
+  //Tarjan's algorithm, with an explicit stack instead of recursion so that large automata do not overflow the call stack
+  //https://en.wikipedia.org/wiki/Tarjan%27s_strongly_connected_components_algorithm
+
+  List<State> states = new ArrayList(automata.values());
+  int n = states.size();
+
+  Map<State, Integer> number = new HashMap();
+  for (int i = 0; i < n; i++) number.put(states.get(i), i);
+
+  int[][] edges = new int[n][];
+  for (int i = 0; i < n; i++) {
+    Collection<State> targets = states.get(i).transitions.values();
+    edges[i] = new int[targets.size()];
+    int e = 0;
+    for (State t : targets) edges[i][e++] = number.get(t);
   }
-  Map<State, List<State>> group = new HashMap();
-  for (State s : L) {
-    assign(s, s, group, visited);
+
+  int[] index = new int[n];
+  int[] lowLink = new int[n];
+  boolean[] done = new boolean[n];
+  int[] stack = new int[n];
+  int stackSize = 0;
+
+  //The explicit call stack: a state and the next of its transitions to follow
+  int[] callState = new int[n];
+  int[] callEdge = new int[n];
+  int nextIndex = 1;
+
+  List<List<State>> groups = new ArrayList();
+
+  for (int root = 0; root < n; root++) {
+    if (index[root] != 0) continue;
+
+    index[root] = lowLink[root] = nextIndex++;
+    stack[stackSize++] = root;
+    callState[0] = root;
+    callEdge[0] = 0;
+    int depth = 1;
+
+    while (depth > 0) {
+      int s = callState[depth - 1];
+
+      if (callEdge[depth - 1] < edges[s].length) {
+        int t = edges[s][callEdge[depth - 1]++];
+        if (index[t] == 0) {
+          index[t] = lowLink[t] = nextIndex++;
+          stack[stackSize++] = t;
+          callState[depth] = t;
+          callEdge[depth] = 0;
+          depth++;
+        } else if (!done[t]) {
+          lowLink[s] = min(lowLink[s], index[t]);
+        }
+        continue;
+      }
+
+      if (lowLink[s] == index[s]) {
+        List<State> group = new ArrayList();
+        int t;
+        do {
+          t = stack[--stackSize];
+          done[t] = true;
+          group.add(states.get(t));
+        } while (t != s);
+        groups.add(group);
+      }
+
+      depth--;
+      if (depth > 0) lowLink[callState[depth - 1]] = min(lowLink[callState[depth - 1]], lowLink[s]);
+    }
   }
 
-  group.keySet().removeIf(s -> group.get(s).size() < 2);
+  groups.removeIf(g -> g.size() < 2);
 
-  long numGroups = group.values().size();
+  long numGroups = groups.size();
 
   colorMode(HSB, 360);
   int count = 0;
-  for (List<State> l : group.values()) {
+  for (List<State> l : groups) {
     for (State s : l) {
       float hue = map(count, 0, numGroups, 0, 360);
       s.colour = color(hue, 360, 360);
@@ -540,20 +665,3 @@ void colourGroups(Map<String, State> automata) {
   }
   colorMode(RGB, 255, 255, 255);
 }
-
-void visit(State u, Map<State, Boolean> visited, List<State> L) {
-  if (visited.get(u)) return;
-
-  visited.put(u, true);
-  for (State s : u.transitions.values()) visit(s, visited, L);
-  L.add(0, u);
-}
-
-void assign(State u, State root, Map<State, List<State>> group, Map<State, Boolean> visited) {
-  if (visited.get(u)) return;
-  visited.put(u, true);
-
-  group.putIfAbsent(root, new ArrayList());
-  group.get(root).add(u);
-  for (State s : u.incomingTransitions) assign(s, root, group, visited);
-}
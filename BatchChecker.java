@@ -0,0 +1,279 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+public class BatchChecker {
+    /*
+     * Checks a stream of graphs for word-representability.
+     * Graphs are read one at a time from a graph6 or edge list file (or standard input),
+     * checked on a fixed size pool of worker threads, and their verdicts are written out
+     * in the same order as the input. At most a fixed number of graphs are in flight at once,
+     * so reading stops while the workers catch up.
+     *
+     * Usage: java BatchChecker [--format graph6|edgelist] [--engine quick|full|symbolic|portfolio] [--threads n]
+     *                          [--in-flight n] [--cache n] [--cache-file file] [--out file] [input file]
+     *
+     * Each output line holds the graph (its graph6 string, or its number in an edge list file)
+     * followed by "true" or "false", or by "error" and a message if the graph could not be read or checked.
+     * A graph that cannot be read gives an error line and the rest of the input is still checked.
+     *
+     * --cache keeps the verdicts of up to n graphs so that graphs isomorphic to ones already checked are not
+     * checked again, and --cache-file keeps them in a file between runs (see VerdictCache).
+     */
+
+    public static void main(String[] args) throws IOException {
+        String format = "graph6";
+        String engine = "quick";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int inFlight = -1;
+        int cacheSize = 0;
+        String cacheFile = null;
+        String in = null;
+        String out = null;
+
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "--format": format = args[++i]; break;
+                case "--engine": engine = args[++i]; break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--in-flight": inFlight = Integer.parseInt(args[++i]); break;
+                case "--cache": cacheSize = Integer.parseInt(args[++i]); break;
+                case "--cache-file": cacheFile = args[++i]; break;
+                case "--out": out = args[++i]; break;
+                default:
+                    if(args[i].startsWith("--")) throw new IllegalArgumentException("Unknown option " + args[i]);
+                    in = args[i];
+            }
+        }
+        if(inFlight < 1) inFlight = threads * 4;
+        if(cacheFile != null && cacheSize < 1) cacheSize = 1 << 20;
+
+        Reader reader = in == null || in.equals("-") ? new InputStreamReader(System.in) : new FileReader(in);
+        Writer writer = out == null || out.equals("-") ? new OutputStreamWriter(System.out) : new FileWriter(out);
+
+        VerdictCache cache = null;
+        if(cacheSize > 0) cache = cacheFile == null ? new VerdictCache(cacheSize) : new VerdictCache(cacheSize, cacheFile);
+
+        long start = System.currentTimeMillis();
+        long count;
+        try(BufferedReader r = new BufferedReader(reader); BufferedWriter w = new BufferedWriter(writer)){
+            count = run(new GraphSource(r, format), w, engine, threads, inFlight, cache);
+        } finally {
+            if(cache != null) cache.close();
+        }
+
+        System.err.println("Checked " + count + " graphs in " + (System.currentTimeMillis() - start) + "ms");
+        if(cache != null) System.err.println(cache);
+    }
+
+    public static long run(GraphSource source, BufferedWriter writer, String engine, int threads, int inFlight) throws IOException {
+        return run(source, writer, engine, threads, inFlight, null);
+    }
+
+    public static long run(GraphSource source, BufferedWriter writer, String engine, int threads, int inFlight, VerdictCache cache) throws IOException {
+        /**
+         * Checks every graph from the source and writes the verdicts in input order.
+         * Verdicts are looked up in and added to the cache, which can be null.
+         * The portfolio engine races the entries of Portfolio.standard() on every graph.
+         * Returns the number of graphs checked.
+         */
+
+        //Each worker checks one graph at a time, so the products themselves are built on a single thread
+        CombinerOptions options = new CombinerOptions().threads(1).writeAutomata(false).cache(cache);
+        boolean full = engine.equals("full");
+        if(engine.equals("symbolic")) options.symbolic(true);
+        else if(engine.equals("portfolio")) options.portfolio(Portfolio.standard());
+        else if(!full && !engine.equals("quick")) throw new IllegalArgumentException("Unknown engine: " + engine);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        Deque<Graph> pending = new ArrayDeque<>();
+        long count = 0;
+
+        try {
+            Graph graph;
+            while((graph = source.next()) != null){
+                if(pending.size() == inFlight) write(writer, pending.poll());
+
+                Graph g = graph;
+                if(g.error != null) g.verdict = CompletableFuture.completedFuture(g.name + " error " + g.error);
+                else g.verdict = workers.submit(() -> verdict(g, full, options));
+                pending.add(g);
+                count++;
+
+                //Write out whatever has already finished without waiting
+                while(!pending.isEmpty() && pending.peek().verdict.isDone()) write(writer, pending.poll());
+            }
+
+            while(!pending.isEmpty()) write(writer, pending.poll());
+        } finally {
+            workers.shutdownNow();
+        }
+
+        return count;
+    }
+
+    public static boolean check(boolean[][] graph, boolean full, CombinerOptions options){
+        /**
+         * Checks a single graph with the chosen combiner.
+         */
+
+        if(!full) return QuickAutomataCombiner.checkWordRepresentable(graph, options);
+
+        int[][] transitionMatrix = new int[graph.length][graph.length];
+        for(int i = 0; i < graph.length; i++){
+            for(int j = 0; j < graph.length; j++) transitionMatrix[i][j] = graph[i][j] ? 1 : 0;
+        }
+        return FullAutomataCombiner.checkWordRepresentable(transitionMatrix, options);
+    }
+
+    private static String verdict(Graph graph, boolean full, CombinerOptions options){
+        //Failures are caught here so that the error line still starts with the graph it belongs to
+        try {
+            return graph.name + " " + check(graph.matrix, full, options);
+        } catch(RuntimeException | OutOfMemoryError e) {
+            return graph.name + " error " + e;
+        }
+    }
+
+    private static void write(BufferedWriter writer, Graph graph) throws IOException {
+        String line;
+        try {
+            line = graph.verdict.get();
+        } catch(ExecutionException e) {
+            line = graph.name + " error " + e.getCause();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a verdict", e);
+        }
+        writer.write(line);
+        writer.newLine();
+    }
+
+
+    public static class Graph {
+
+        String name;
+        boolean[][] matrix;
+
+        //Why the graph could not be read, in which case it has no matrix
+        Throwable error;
+
+        //The verdict line for the graph once it has been handed to the workers
+        Future<String> verdict;
+
+        public Graph(String name, boolean[][] matrix){
+            this.name = name;
+            this.matrix = matrix;
+        }
+
+        Graph(String name, Throwable error){
+            this.name = name;
+            this.error = error;
+        }
+    }
+
+
+    public static class GraphSource {
+        /*
+         * Lazily parses graphs from a reader, one graph per call to next().
+         *
+         * graph6: one graph6 string per line, blank lines are skipped.
+         * edgelist: each graph starts with a line holding its number of vertices, followed by one
+         *           "u v" line per edge (vertices numbered from 0), and ends at a blank line or the end of the input.
+         * Lines starting with # are treated as comments in both formats.
+         *
+         * A graph that cannot be parsed is returned with its error instead of a matrix, and reading carries on
+         * from the next line (or, for an edge list, after the blank line that ends the broken graph).
+         */
+
+        final BufferedReader reader;
+        final boolean graph6;
+        long number = 0;
+
+        public GraphSource(BufferedReader reader, String format){
+            this.reader = reader;
+            if(!format.equals("graph6") && !format.equals("edgelist")) throw new IllegalArgumentException("Unknown format: " + format);
+            this.graph6 = format.equals("graph6");
+        }
+
+        public Graph next() throws IOException {
+            /**
+             * Returns the next graph, or null at the end of the input.
+             * A graph that cannot be parsed is returned with its error set.
+             */
+
+            String line = nextLine();
+            if(line == null) return null;
+
+            number++;
+            if(graph6){
+                if(line.startsWith(">>graph6<<")) line = line.substring(10);
+                try {
+                    return new Graph(line, Graph6.decode(line));
+                } catch(RuntimeException | OutOfMemoryError e) {
+                    return new Graph(line, e);
+                }
+            }
+
+            String name = Long.toString(number);
+            boolean[][] matrix = null;
+            Throwable error = null;
+            try {
+                int n = Integer.parseInt(line);
+                if(n < 0) throw new IllegalArgumentException("Negative number of vertices: " + line);
+                matrix = new boolean[n][n];
+            } catch(RuntimeException | OutOfMemoryError e) {
+                error = e;
+            }
+
+            //The edges of a broken graph are still read, so that the next graph starts after its blank line
+            while((line = reader.readLine()) != null){
+                line = line.strip();
+                if(line.isEmpty()) break;
+                if(line.startsWith("#") || error != null) continue;
+
+                try {
+                    addEdge(matrix, line);
+                } catch(RuntimeException e) {
+                    error = e;
+                }
+            }
+            return error != null ? new Graph(name, error) : new Graph(name, matrix);
+        }
+
+        private static void addEdge(boolean[][] matrix, String line){
+            String[] edge = line.split("\\s+");
+            if(edge.length != 2) throw new IllegalArgumentException("Edge line does not hold two vertices: " + line);
+            int u = Integer.parseInt(edge[0]);
+            int v = Integer.parseInt(edge[1]);
+            if(u < 0 || v < 0 || u >= matrix.length || v >= matrix.length) throw new IllegalArgumentException("Vertex out of range in edge: " + line);
+            if(u != v){
+                matrix[u][v] = true;
+                matrix[v][u] = true;
+            }
+        }
+
+        private String nextLine() throws IOException {
+            String line;
+            while((line = reader.readLine()) != null){
+                line = line.strip();
+                if(!line.isEmpty() && !line.startsWith("#")) return line;
+            }
+            return null;
+        }
+    }
+}
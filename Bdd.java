@@ -0,0 +1,488 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class Bdd {
+    /*
+     * A small reduced ordered binary decision diagram package, so symbolic checks need no native libraries.
+     *
+     * Nodes are ints indexing into parallel arrays of their variable, low child and high child, with 0 and 1
+     * as the false and true terminals. Every node is made through mk(), which looks it up in a unique table
+     * (buckets of chains through next[]) first, so two equal functions are always the same node and comparing
+     * BDDs is comparing ints. The results of the operations are kept in a direct mapped computed cache,
+     * keyed by the operation and its operands, so shared subproblems are only worked out once.
+     *
+     * Nodes are never freed in the middle of an operation: when the table fills up it is doubled instead.
+     * Before each operation, if the table is mostly full, nodes that cannot be reached from a referenced node
+     * are swept onto a free list (mark and sweep garbage collection) and the computed cache is cleared.
+     * So anything kept across operations has to be held with ref() and let go of with deref(). The operands
+     * of an operation are referenced while it runs, so results can be passed straight into the next one.
+     *
+     * Variables are numbered from 0, and the variable order is the numbering.
+     */
+
+    public static final int FALSE = 0;
+    public static final int TRUE = 1;
+
+    static final int OP_AND = 0;
+    static final int OP_OR = 1;
+    static final int OP_NOT = 2;
+    static final int OP_EXISTS = 3;
+    static final int OP_AND_EXISTS = 4;
+    static final int OP_REPLACE = 5;
+
+    final int numVars;
+
+    int[] var;
+    int[] low;
+    int[] high;
+    int[] next;
+    int[] refs;
+    int[] buckets;
+    int capacity;
+
+    //Nodes past the end of the used part of the arrays, and the chain of freed nodes through next[]
+    int allocated;
+    int freeList = -1;
+    int freeCount = 0;
+
+    int[] cacheOp;
+    int[] cacheA;
+    int[] cacheB;
+    int[] cacheC;
+    int[] cacheResult;
+
+    //Each renaming given to replace() gets an id so its results can be cached
+    final Map<int[], Integer> maps = new HashMap<>();
+
+    int collections = 0;
+
+    public Bdd(int numVars, int initialNodes){
+        this.numVars = numVars;
+        this.capacity = Integer.highestOneBit(Math.max(1 << 10, initialNodes) - 1) << 1;
+        var = new int[capacity];
+        low = new int[capacity];
+        high = new int[capacity];
+        next = new int[capacity];
+        refs = new int[capacity];
+        buckets = new int[capacity];
+        Arrays.fill(buckets, -1);
+        resizeCache(capacity);
+
+        //The terminals come after every variable in the order
+        for(int t = 0; t < 2; t++){
+            var[t] = numVars;
+            low[t] = t;
+            high[t] = t;
+            refs[t] = 1;
+        }
+        allocated = 2;
+    }
+
+    public int var(int v){
+        /**
+         * Returns the function that is true when variable v is.
+         */
+
+        return mk(v, FALSE, TRUE);
+    }
+
+    public int nvar(int v){
+        return mk(v, TRUE, FALSE);
+    }
+
+    public int ref(int f){
+        refs[f]++;
+        return f;
+    }
+
+    public void deref(int f){
+        refs[f]--;
+    }
+
+    public int and(int f, int g){
+        start(f, g);
+        int r = apply(OP_AND, f, g);
+        finish(f, g);
+        return r;
+    }
+
+    public int or(int f, int g){
+        start(f, g);
+        int r = apply(OP_OR, f, g);
+        finish(f, g);
+        return r;
+    }
+
+    public int not(int f){
+        start(f, f);
+        int r = not0(f);
+        finish(f, f);
+        return r;
+    }
+
+    public int andNot(int f, int g){
+        start(f, g);
+        int notG = ref(not0(g));
+        int r = apply(OP_AND, f, notG);
+        deref(notG);
+        finish(f, g);
+        return r;
+    }
+
+    public int exists(int f, int cube){
+        /**
+         * Returns f with the variables of the cube (a conjunction of variables) quantified away.
+         */
+
+        start(f, cube);
+        int r = exists0(f, cube);
+        finish(f, cube);
+        return r;
+    }
+
+    public int andExists(int f, int g, int cube){
+        /**
+         * Returns exists(and(f, g), cube) without building the conjunction first, the relational product
+         * used to take the image of a set of states under a transition relation.
+         */
+
+        start(f, g);
+        ref(cube);
+        int r = andExists0(f, g, cube);
+        deref(cube);
+        finish(f, g);
+        return r;
+    }
+
+    public int replace(int f, int[] map){
+        /**
+         * Renames every variable v of f to map[v]. The map has to keep the order of the variables of f.
+         */
+
+        Integer id = maps.get(map);
+        if(id == null){
+            id = maps.size();
+            maps.put(map, id);
+        }
+        start(f, f);
+        int r = replace0(f, map, id);
+        finish(f, f);
+        return r;
+    }
+
+    public int cube(int[] vars){
+        /**
+         * Returns the conjunction of the given variables.
+         */
+
+        int[] sorted = vars.clone();
+        Arrays.sort(sorted);
+        int r = TRUE;
+        for(int i = sorted.length - 1; i >= 0; i--) r = mk(sorted[i], FALSE, r);
+        return r;
+    }
+
+    public double satCount(int f, int[] vars){
+        /**
+         * Returns how many assignments to the given variables make f true. f can only depend on these variables.
+         */
+
+        int[] sorted = vars.clone();
+        Arrays.sort(sorted);
+        int[] position = new int[numVars + 1];
+        Arrays.fill(position, -1);
+        for(int i = 0; i < sorted.length; i++) position[sorted[i]] = i;
+        position[numVars] = sorted.length;
+        return satCount(f, position, new HashMap<>()) * Math.pow(2, position[var[f]]);
+    }
+
+    private double satCount(int f, int[] position, Map<Integer, Double> memo){
+        if(f == FALSE) return 0;
+        if(f == TRUE) return 1;
+        Double known = memo.get(f);
+        if(known != null) return known;
+
+        int p = position[var[f]];
+        if(p == -1) throw new IllegalArgumentException("Variable " + var[f] + " is not being counted");
+        double count = satCount(low[f], position, memo) * Math.pow(2, position[var[low[f]]] - p - 1)
+                     + satCount(high[f], position, memo) * Math.pow(2, position[var[high[f]]] - p - 1);
+        memo.put(f, count);
+        return count;
+    }
+
+    public int nodeCount(int f){
+        /**
+         * Returns the number of nodes in f, not counting the terminals.
+         */
+
+        boolean[] seen = new boolean[allocated];
+        int[] stack = new int[allocated];
+        int size = 0, count = 0;
+        stack[size++] = f;
+        seen[f] = true;
+        while(size > 0){
+            int g = stack[--size];
+            if(g < 2) continue;
+            count++;
+            if(!seen[low[g]]){ seen[low[g]] = true; stack[size++] = low[g]; }
+            if(!seen[high[g]]){ seen[high[g]] = true; stack[size++] = high[g]; }
+        }
+        return count;
+    }
+
+    public int liveNodes(){
+        return allocated - freeCount;
+    }
+
+    public int collections(){
+        return collections;
+    }
+
+    int mk(int v, int lo, int hi){
+        if(lo == hi) return lo;
+
+        int bucket = hash(v, lo, hi) & (capacity - 1);
+        for(int n = buckets[bucket]; n != -1; n = next[n]){
+            if(var[n] == v && low[n] == lo && high[n] == hi) return n;
+        }
+
+        if(freeList == -1 && allocated == capacity){
+            grow();
+            bucket = hash(v, lo, hi) & (capacity - 1);
+        }
+
+        int n;
+        if(freeList != -1){
+            n = freeList;
+            freeList = next[n];
+            freeCount--;
+        }
+        else n = allocated++;
+
+        var[n] = v;
+        low[n] = lo;
+        high[n] = hi;
+        refs[n] = 0;
+        next[n] = buckets[bucket];
+        buckets[bucket] = n;
+        return n;
+    }
+
+    private int apply(int op, int f, int g){
+        if(op == OP_AND){
+            if(f == FALSE || g == FALSE) return FALSE;
+            if(f == TRUE || f == g) return g;
+            if(g == TRUE) return f;
+        }
+        else{
+            if(f == TRUE || g == TRUE) return TRUE;
+            if(f == FALSE || f == g) return g;
+            if(g == FALSE) return f;
+        }
+        if(f > g){
+            int swap = f;
+            f = g;
+            g = swap;
+        }
+
+        int slot = cacheSlot(op, f, g, 0);
+        if(cacheOp[slot] == op && cacheA[slot] == f && cacheB[slot] == g) return cacheResult[slot];
+
+        int v = Math.min(var[f], var[g]);
+        int f0 = var[f] == v ? low[f] : f, f1 = var[f] == v ? high[f] : f;
+        int g0 = var[g] == v ? low[g] : g, g1 = var[g] == v ? high[g] : g;
+        int r = mk(v, apply(op, f0, g0), apply(op, f1, g1));
+
+        store(slot, op, f, g, 0, r);
+        return r;
+    }
+
+    private int not0(int f){
+        if(f < 2) return 1 - f;
+
+        int slot = cacheSlot(OP_NOT, f, 0, 0);
+        if(cacheOp[slot] == OP_NOT && cacheA[slot] == f) return cacheResult[slot];
+
+        int r = mk(var[f], not0(low[f]), not0(high[f]));
+        store(slot, OP_NOT, f, 0, 0, r);
+        return r;
+    }
+
+    private int exists0(int f, int cube){
+        while(var[cube] < var[f]) cube = high[cube];
+        if(f < 2 || cube == TRUE) return f;
+
+        int slot = cacheSlot(OP_EXISTS, f, cube, 0);
+        if(cacheOp[slot] == OP_EXISTS && cacheA[slot] == f && cacheB[slot] == cube) return cacheResult[slot];
+
+        int r;
+        if(var[f] == var[cube]) r = apply(OP_OR, exists0(low[f], high[cube]), exists0(high[f], high[cube]));
+        else r = mk(var[f], exists0(low[f], cube), exists0(high[f], cube));
+
+        store(slot, OP_EXISTS, f, cube, 0, r);
+        return r;
+    }
+
+    private int andExists0(int f, int g, int cube){
+        if(f == FALSE || g == FALSE) return FALSE;
+        if(f == TRUE && g == TRUE) return TRUE;
+        if(f == TRUE || f == g) return exists0(g, cube);
+        if(g == TRUE) return exists0(f, cube);
+        if(f > g){
+            int swap = f;
+            f = g;
+            g = swap;
+        }
+
+        int v = Math.min(var[f], var[g]);
+        while(var[cube] < v) cube = high[cube];
+        if(cube == TRUE) return apply(OP_AND, f, g);
+
+        int slot = cacheSlot(OP_AND_EXISTS, f, g, cube);
+        if(cacheOp[slot] == OP_AND_EXISTS && cacheA[slot] == f && cacheB[slot] == g && cacheC[slot] == cube) return cacheResult[slot];
+
+        int f0 = var[f] == v ? low[f] : f, f1 = var[f] == v ? high[f] : f;
+        int g0 = var[g] == v ? low[g] : g, g1 = var[g] == v ? high[g] : g;
+
+        int r;
+        if(v == var[cube]){
+            int r0 = andExists0(f0, g0, high[cube]);
+            if(r0 == TRUE) r = TRUE;
+            else r = apply(OP_OR, r0, andExists0(f1, g1, high[cube]));
+        }
+        else r = mk(v, andExists0(f0, g0, cube), andExists0(f1, g1, cube));
+
+        store(slot, OP_AND_EXISTS, f, g, cube, r);
+        return r;
+    }
+
+    private int replace0(int f, int[] map, int id){
+        if(f < 2) return f;
+
+        int slot = cacheSlot(OP_REPLACE, f, id, 0);
+        if(cacheOp[slot] == OP_REPLACE && cacheA[slot] == f && cacheB[slot] == id) return cacheResult[slot];
+
+        int r = mk(map[var[f]], replace0(low[f], map, id), replace0(high[f], map, id));
+        store(slot, OP_REPLACE, f, id, 0, r);
+        return r;
+    }
+
+    private void start(int f, int g){
+        //The operands are held while collecting, since the caller may not have referenced them
+        refs[f]++;
+        refs[g]++;
+        if(liveNodes() > capacity - capacity / 8) collect();
+    }
+
+    private void finish(int f, int g){
+        refs[f]--;
+        refs[g]--;
+    }
+
+    void collect(){
+        /**
+         * Frees every node that cannot be reached from a referenced node, and doubles the table
+         * if it is still more than half full afterwards.
+         */
+
+        collections++;
+        boolean[] marked = new boolean[capacity];
+        int[] stack = new int[allocated];
+        int size = 0;
+        for(int n = 0; n < allocated; n++){
+            if(refs[n] > 0 && !marked[n]){
+                marked[n] = true;
+                stack[size++] = n;
+            }
+        }
+        while(size > 0){
+            int n = stack[--size];
+            if(n < 2) continue;
+            if(!marked[low[n]]){ marked[low[n]] = true; stack[size++] = low[n]; }
+            if(!marked[high[n]]){ marked[high[n]] = true; stack[size++] = high[n]; }
+        }
+
+        Arrays.fill(buckets, -1);
+        freeList = -1;
+        freeCount = 0;
+        for(int n = allocated - 1; n >= 2; n--){
+            if(marked[n]){
+                int bucket = hash(var[n], low[n], high[n]) & (capacity - 1);
+                next[n] = buckets[bucket];
+                buckets[bucket] = n;
+            }
+            else{
+                var[n] = -1;
+                next[n] = freeList;
+                freeList = n;
+                freeCount++;
+            }
+        }
+        Arrays.fill(cacheOp, -1);
+
+        if(liveNodes() > capacity / 2) grow();
+    }
+
+    private void grow(){
+        capacity *= 2;
+        var = Arrays.copyOf(var, capacity);
+        low = Arrays.copyOf(low, capacity);
+        high = Arrays.copyOf(high, capacity);
+        next = Arrays.copyOf(next, capacity);
+        refs = Arrays.copyOf(refs, capacity);
+
+        buckets = new int[capacity];
+        Arrays.fill(buckets, -1);
+        for(int n = 2; n < allocated; n++){
+            if(var[n] == -1) continue;
+            int bucket = hash(var[n], low[n], high[n]) & (capacity - 1);
+            next[n] = buckets[bucket];
+            buckets[bucket] = n;
+        }
+
+        //The free list was chained through next[], so it is rebuilt from the freed nodes
+        freeList = -1;
+        for(int n = allocated - 1; n >= 2; n--){
+            if(var[n] == -1){
+                next[n] = freeList;
+                freeList = n;
+            }
+        }
+
+        resizeCache(capacity);
+    }
+
+    private void resizeCache(int nodes){
+        int size = Math.max(1 << 10, nodes / 2);
+        cacheOp = new int[size];
+        Arrays.fill(cacheOp, -1);
+        cacheA = new int[size];
+        cacheB = new int[size];
+        cacheC = new int[size];
+        cacheResult = new int[size];
+    }
+
+    private int cacheSlot(int op, int a, int b, int c){
+        int h = op * 0x9E3779B1 + a;
+        h = h * 0x85EBCA77 + b;
+        h = h * 0xC2B2AE3D + c;
+        h ^= h >>> 15;
+        return h & (cacheOp.length - 1);
+    }
+
+    private void store(int slot, int op, int a, int b, int c, int result){
+        cacheOp[slot] = op;
+        cacheA[slot] = a;
+        cacheB[slot] = b;
+        cacheC[slot] = c;
+        cacheResult[slot] = result;
+    }
+
+    private static int hash(int v, int lo, int hi){
+        int h = v * 0x9E3779B1 + lo;
+        h = h * 0x85EBCA77 + hi;
+        return h ^ (h >>> 16);
+    }
+}
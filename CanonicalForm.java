@@ -0,0 +1,246 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class CanonicalForm {
+    /*
+     * Finds a canonical labelling of a graph, so that two graphs get the same canonical form
+     * exactly when they are isomorphic.
+     *
+     * The vertices are first coloured by colour refinement: vertices keep splitting into new colours
+     * by how many neighbours they have of every colour, until no colour splits any further.
+     * If some colours still hold more than one vertex, each vertex of the first such colour is given
+     * a colour of its own in turn and the refinement carries on from there. Every branch of this search
+     * ends with every vertex in its own colour, which numbers the vertices, and the numbering that gives
+     * the smallest adjacency matrix is the canonical one.
+     *
+     * Two numberings that give the same matrix show an automorphism of the graph. The branches of a
+     * vertex that an automorphism found so far maps onto an already searched vertex would only give
+     * the same matrices again, so they are skipped. When a branch gives the same matrix as the very first
+     * branch, the rest of it is the image of the first branch under that automorphism, so the search
+     * goes straight back to where the two split. This keeps graphs with many symmetries, such as
+     * empty and complete graphs, from searching every ordering of their vertices.
+     */
+
+    final boolean[][] graph;
+    final int n;
+
+    long[] best;
+    int[] bestLabelling;
+    long[] first;
+    int[] firstLabelling;
+    int[] firstPath;
+    final List<int[]> automorphisms = new ArrayList<>();
+
+    CanonicalForm(boolean[][] graph){
+        this.graph = graph;
+        this.n = graph.length;
+    }
+
+    public static String key(boolean[][] graph){
+        /**
+         * Returns the canonical form in graph6 format, which is the same for every labelling of the graph.
+         */
+
+        return Graph6.encode(canonical(graph));
+    }
+
+    public static boolean[][] canonical(boolean[][] graph){
+        int[] labelling = labelling(graph);
+
+        boolean[][] canonical = new boolean[graph.length][graph.length];
+        for(int i = 0; i < graph.length; i++){
+            for(int j = 0; j < graph.length; j++) canonical[labelling[i]][labelling[j]] = graph[i][j];
+        }
+        return canonical;
+    }
+
+    public static int[] labelling(boolean[][] graph){
+        /**
+         * Returns the canonical labelling, where vertex v becomes vertex labelling[v].
+         */
+
+        CanonicalForm search = new CanonicalForm(graph);
+        search.search(search.refine(new int[graph.length]), new int[0]);
+        return search.bestLabelling;
+    }
+
+    int[] refine(int[] colour){
+        /**
+         * Splits the colours until every vertex of a colour has the same number of neighbours of each colour.
+         * The new colours are numbered so that they keep the order of the colours they were split from.
+         */
+
+        int cells = countColours(colour);
+
+        while(true){
+            int colours = 0;
+            for(int c : colour) colours = Math.max(colours, c + 1);
+
+            int[][] signature = new int[n][colours + 1];
+            for(int v = 0; v < n; v++){
+                signature[v][0] = colour[v];
+                for(int u = 0; u < n; u++){
+                    if(graph[v][u]) signature[v][colour[u] + 1]++;
+                }
+            }
+
+            Integer[] order = new Integer[n];
+            for(int v = 0; v < n; v++) order[v] = v;
+            Arrays.sort(order, (a, b) -> Arrays.compare(signature[a], signature[b]));
+
+            int[] refined = new int[n];
+            int next = 0;
+            for(int i = 0; i < n; i++){
+                if(i > 0 && !Arrays.equals(signature[order[i]], signature[order[i - 1]])) next++;
+                refined[order[i]] = next;
+            }
+
+            colour = refined;
+            if(next + 1 == cells) return colour;
+            cells = next + 1;
+        }
+    }
+
+    int search(int[] colour, int[] path){
+        /**
+         * Searches every branch below the given colouring, where path holds the vertices given colours of their own so far.
+         * Returns the depth the search should go back to, or the depth of the path to carry on as normal.
+         */
+
+        int[] size = new int[n];
+        for(int c : colour) size[c]++;
+
+        int cell = -1;
+        for(int c = 0; c < n && cell == -1; c++){
+            if(size[c] > 1) cell = c;
+        }
+
+        if(cell == -1) return leaf(colour, path);
+
+        List<Integer> tried = new ArrayList<>();
+        for(int v = 0; v < n; v++){
+            if(colour[v] != cell || sameOrbit(v, tried, path)) continue;
+            tried.add(v);
+
+            int[] individualised = new int[n];
+            for(int u = 0; u < n; u++){
+                individualised[u] = 2 * colour[u] + (colour[u] == cell && u != v ? 1 : 0);
+            }
+
+            int[] next = Arrays.copyOf(path, path.length + 1);
+            next[path.length] = v;
+            int depth = search(refine(individualised), next);
+            if(depth < path.length) return depth;
+        }
+
+        return path.length;
+    }
+
+    int leaf(int[] labelling, int[] path){
+        int[] inverse = new int[n];
+        for(int v = 0; v < n; v++) inverse[labelling[v]] = v;
+
+        long[] certificate = new long[(n * (n - 1) / 2 + 63) >>> 6];
+        int bit = 0;
+        for(int i = 0; i < n; i++){
+            for(int j = i + 1; j < n; j++, bit++){
+                if(graph[inverse[i]][inverse[j]]) certificate[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        if(first == null){
+            first = best = certificate;
+            firstLabelling = bestLabelling = labelling.clone();
+            firstPath = path;
+            return path.length;
+        }
+
+        if(Arrays.equals(certificate, first)){
+            automorphisms.add(automorphism(firstLabelling, labelling));
+
+            //Go back to where this branch split from the first one
+            int depth = 0;
+            while(depth < path.length && path[depth] == firstPath[depth]) depth++;
+            return depth;
+        }
+
+        int compare = Arrays.compare(certificate, best);
+        if(compare < 0){
+            best = certificate;
+            bestLabelling = labelling.clone();
+        }
+        else if(compare == 0){
+            automorphisms.add(automorphism(bestLabelling, labelling));
+        }
+        return path.length;
+    }
+
+    int[] automorphism(int[] labelling1, int[] labelling2){
+        /**
+         * Returns the automorphism that maps each vertex to the vertex with the same number in the other labelling,
+         * given that both labellings give the same graph.
+         */
+
+        int[] inverse1 = new int[n];
+        for(int v = 0; v < n; v++) inverse1[labelling1[v]] = v;
+
+        int[] automorphism = new int[n];
+        for(int v = 0; v < n; v++) automorphism[v] = inverse1[labelling2[v]];
+        return automorphism;
+    }
+
+    boolean sameOrbit(int v, List<Integer> tried, int[] path){
+        /**
+         * Returns true if an automorphism found so far that fixes every vertex of the path
+         * maps v onto one of the vertices already tried.
+         */
+
+        if(tried.isEmpty() || automorphisms.isEmpty()) return false;
+
+        int[] parent = new int[n];
+        for(int u = 0; u < n; u++) parent[u] = u;
+
+        for(int[] automorphism : automorphisms){
+            boolean fixesPath = true;
+            for(int p : path){
+                if(automorphism[p] != p){
+                    fixesPath = false;
+                    break;
+                }
+            }
+            if(!fixesPath) continue;
+
+            for(int u = 0; u < n; u++) parent[find(parent, u)] = find(parent, automorphism[u]);
+        }
+
+        for(int t : tried){
+            if(find(parent, t) == find(parent, v)) return true;
+        }
+        return false;
+    }
+
+    private static int find(int[] parent, int u){
+        while(parent[u] != u){
+            parent[u] = parent[parent[u]];
+            u = parent[u];
+        }
+        return u;
+    }
+
+    private static int countColours(int[] colour){
+        int colours = 0;
+        for(int c : colour) colours = Math.max(colours, c + 1);
+
+        boolean[] used = new boolean[colours];
+        int count = 0;
+        for(int c : colour){
+            if(!used[c]){
+                used[c] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+public class CheckServer implements Closeable {
+    /*
+     * Keeps a warmed up JVM running and checks graphs sent to it over a local socket,
+     * so that checking a small graph does not pay for starting the JVM and compiling the combiners every time.
+     *
+     * Usage: java CheckServer [--port n | --socket file] [--engine quick|full|symbolic] [--threads n]
+     *                         [--timeout ms] [--warmup n] [--cache n]
+     *
+     * The server listens on the loopback interface (port 4011 by default), or on a Unix domain socket file.
+     * Each request is one line holding the graph, as a graph6 string or as the rows of its adjacency matrix
+     * separated by commas (such as 011,101,110), optionally preceded by engine=<engine> and timeout=<ms>.
+     * Each reply is one line: "true" or "false" followed by the time the check took in microseconds,
+     * "timeout" if the check was cancelled after the timeout, or "error" and a message.
+     * A connection can send any number of requests, and its replies come back in the same order.
+     *
+     * Checks run on a fixed pool of worker threads while each connection waits on its own thread.
+     * A check that runs past its timeout is cancelled by interrupting its worker, which the combiners notice
+     * between steps, so the worker is soon free for the next request.
+     */
+
+    public static final int DEFAULT_PORT = 4011;
+
+    final ServerSocketChannel server;
+    final Path socketFile;
+    final ExecutorService workers;
+    final ExecutorService connections;
+    final String engine;
+    final long timeout;
+    final VerdictCache cache;
+
+    public CheckServer(SocketAddress address, String engine, int threads, long timeout, VerdictCache cache) throws IOException {
+        /**
+         * Opens the server on a loopback or Unix domain socket address.
+         * Checks use the given engine unless a request asks for another, and are cancelled
+         * after timeout milliseconds unless the request gives its own timeout (0 waits forever).
+         */
+
+        if(address instanceof UnixDomainSocketAddress){
+            this.socketFile = ((UnixDomainSocketAddress) address).getPath();
+            Files.deleteIfExists(socketFile);
+            this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        }
+        else{
+            this.socketFile = null;
+            this.server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+
+        options(engine);
+        this.engine = engine;
+        this.timeout = timeout;
+        this.cache = cache;
+        this.workers = Executors.newFixedThreadPool(threads);
+        this.connections = Executors.newCachedThreadPool();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        String socket = null;
+        String engine = "quick";
+        int threads = Runtime.getRuntime().availableProcessors();
+        long timeout = 0;
+        int warmup = -1;
+        int cacheSize = 0;
+
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--socket": socket = args[++i]; break;
+                case "--engine": engine = args[++i]; break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--timeout": timeout = Long.parseLong(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--cache": cacheSize = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        //Graphs big enough to reach the combiners take much longer to check with the full and symbolic engines
+        if(warmup < 0) warmup = engine.equals("quick") ? 200 : 30;
+
+        SocketAddress address = socket != null ? UnixDomainSocketAddress.of(socket)
+                                               : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        VerdictCache cache = cacheSize > 0 ? new VerdictCache(cacheSize) : null;
+
+        CheckServer server = new CheckServer(address, engine, threads, timeout, cache);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }));
+
+        long start = System.currentTimeMillis();
+        server.warmup(warmup, new Random(4011));
+        System.err.println("Warmed up with " + warmup + " graphs in " + (System.currentTimeMillis() - start) + "ms");
+        System.err.println("Listening on " + (socket != null ? socket : address));
+
+        server.serve();
+    }
+
+    public void warmup(int graphs, Random random){
+        /**
+         * Checks random graphs of 6 to 8 vertices (up to 7 for the slower full and symbolic engines) with the server's engine,
+         * so that the combiners are compiled before the first request comes in.
+         * Without the cache, so that the warm up does not fill it, and without reducing the graphs,
+         * as most small graphs would otherwise be answered before reaching a combiner.
+         */
+
+        CombinerOptions options = options(engine).cache(null).reduceGraph(false);
+        boolean full = engine.equals("full");
+        int sizes = engine.equals("quick") ? 3 : 2;
+        for(int g = 0; g < graphs; g++){
+            int n = 6 + random.nextInt(sizes);
+            boolean[][] graph = new boolean[n][n];
+            for(int i = 0; i < n; i++){
+                for(int j = i + 1; j < n; j++){
+                    graph[i][j] = graph[j][i] = random.nextBoolean();
+                }
+            }
+            BatchChecker.check(graph, full, options);
+        }
+    }
+
+    public void serve() throws IOException {
+        /**
+         * Accepts connections until the server is closed, serving each one on its own thread.
+         */
+
+        try {
+            while(true){
+                SocketChannel channel = server.accept();
+                connections.execute(() -> connection(channel));
+            }
+        } catch(ClosedChannelException e) {
+            //The server was closed
+        }
+    }
+
+    void connection(SocketChannel channel){
+        try(channel){
+            if(socketFile == null) channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.US_ASCII));
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.US_ASCII));
+
+            String line;
+            while((line = reader.readLine()) != null){
+                line = line.strip();
+                if(line.isEmpty() || line.startsWith("#")) continue;
+
+                writer.write(handle(line));
+                writer.newLine();
+                writer.flush();
+            }
+        } catch(IOException e) {
+            //The client went away
+        }
+    }
+
+    public String handle(String request){
+        /**
+         * Checks the graph in one request line and returns the reply line.
+         */
+
+        String[] tokens = request.split("\\s+");
+        String engine = this.engine;
+        long timeout = this.timeout;
+        boolean[][] graph;
+        CombinerOptions options;
+        try {
+            for(int i = 0; i < tokens.length - 1; i++){
+                if(tokens[i].startsWith("engine=")) engine = tokens[i].substring(7);
+                else if(tokens[i].startsWith("timeout=")) timeout = Long.parseLong(tokens[i].substring(8));
+                else throw new IllegalArgumentException("Unknown option " + tokens[i]);
+            }
+            graph = parseGraph(tokens[tokens.length - 1]);
+            options = options(engine);
+        } catch(IllegalArgumentException e) {
+            return "error " + e.getMessage();
+        } catch(RuntimeException | Error e) {
+            //Anything else a bad line causes is still only an error for that request, not the end of the connection
+            return "error " + e;
+        }
+
+        boolean full = engine.equals("full");
+        Future<String> verdict = workers.submit(() -> {
+            long start = System.nanoTime();
+            boolean result = BatchChecker.check(graph, full, options);
+            return result + " " + (System.nanoTime() - start) / 1000 + "us";
+        });
+
+        try {
+            return timeout > 0 ? verdict.get(timeout, TimeUnit.MILLISECONDS) : verdict.get();
+        } catch(TimeoutException e) {
+            verdict.cancel(true);
+            return "timeout " + timeout + "ms";
+        } catch(ExecutionException e) {
+            return "error " + e.getCause();
+        } catch(InterruptedException e) {
+            verdict.cancel(true);
+            Thread.currentThread().interrupt();
+            return "error Interrupted while waiting for a verdict";
+        }
+    }
+
+    CombinerOptions options(String engine){
+        //Each worker checks one graph at a time, so the products themselves are built on a single thread
+        CombinerOptions options = new CombinerOptions().threads(1).writeAutomata(false).cache(cache);
+        if(engine.equals("symbolic")) options.symbolic(true);
+        else if(!engine.equals("full") && !engine.equals("quick")) throw new IllegalArgumentException("Unknown engine: " + engine);
+        return options;
+    }
+
+    public static boolean[][] parseGraph(String graph){
+        /**
+         * Reads a graph written as a graph6 string, or as the rows of its adjacency matrix separated by commas.
+         * The characters 0 and 1 are never part of a graph6 string, so the two cannot be mixed up.
+         */
+
+        if(!graph.matches("[01,]+")) return Graph6.decode(graph);
+
+        String[] rows = graph.split(",");
+        int n = rows.length;
+        boolean[][] matrix = new boolean[n][n];
+        for(int i = 0; i < n; i++){
+            if(rows[i].length() != n) throw new IllegalArgumentException("Adjacency matrix is not square: " + graph);
+            for(int j = 0; j < n; j++){
+                if(i != j && rows[i].charAt(j) == '1'){
+                    matrix[i][j] = true;
+                    matrix[j][i] = true;
+                }
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public void close() throws IOException {
+        /**
+         * Stops accepting connections and cancels the checks still running.
+         */
+
+        server.close();
+        workers.shutdownNow();
+        connections.shutdownNow();
+        if(socketFile != null) Files.deleteIfExists(socketFile);
+    }
+}
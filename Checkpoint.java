@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+
+public class Checkpoint {
+    /*
+     * A point part way through folding the automata of a graph, saved so that a long check can carry on
+     * from there if the program is stopped. It holds the graph (in graph6 format) and the combiner it belongs to,
+     * the automaton combined so far, and the alphabets of the automata still to be combined, in the order
+     * they were going to be combined in.
+     *
+     * All values are little endian:
+     *
+     *     magic "CKPT", version, size of this header in bytes (a multiple of 8)
+     *     number of automata combined so far
+     *     combiner name and graph6 string, each as a length followed by its bytes
+     *     number of automata left, then for each one the size of its alphabet followed by its symbols
+     *     the combined automaton in the format of AutomataFile
+     *
+     * Checkpoints are written by a Writer on its own thread, to a temporary file that is moved over the old
+     * checkpoint once it is complete, so a checkpoint on disk is never half written.
+     */
+
+    public static final int MAGIC = 'C' | ('K' << 8) | ('P' << 16) | ('T' << 24);
+    public static final int VERSION = 1;
+
+    final int combined;
+    final String combiner;
+    final String graph;
+    final int[][] remaining;
+    final AutomataFile automaton;
+
+    Checkpoint(int combined, String combiner, String graph, int[][] remaining, AutomataFile automaton){
+        this.combined = combined;
+        this.combiner = combiner;
+        this.graph = graph;
+        this.remaining = remaining;
+        this.automaton = automaton;
+    }
+
+    public static boolean exists(String fileName){
+        return Files.exists(Path.of(fileName));
+    }
+
+    public static Checkpoint read(String fileName) throws IOException {
+        try(FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)){
+            ByteBuffer start = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, start, 0);
+            if(start.getInt() != MAGIC) throw new IOException(fileName + " is not a checkpoint file");
+            int version = start.getInt();
+            if(version != VERSION) throw new IOException(fileName + " has unsupported version " + version);
+            int headerBytes = start.getInt();
+
+            ByteBuffer header = ByteBuffer.allocate(headerBytes - 12).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 12);
+
+            int combined = header.getInt();
+            String combiner = getString(header);
+            String graph = getString(header);
+            int[][] remaining = new int[header.getInt()][];
+            for(int i = 0; i < remaining.length; i++){
+                remaining[i] = new int[header.getInt()];
+                for(int j = 0; j < remaining[i].length; j++) remaining[i][j] = header.getInt();
+            }
+
+            return new Checkpoint(combined, combiner, graph, remaining, AutomataFile.read(channel, headerBytes, fileName));
+        }
+    }
+
+    public static <A> Writer start(CombinerOptions options, String combiner, boolean[][] graph, List<A> automatas,
+                                   Function<A, Alphabet> alphabet, Function<AutomataFile, A> restore){
+        /**
+         * Sets up checkpointing for a check, returning null if it is turned off in the options.
+         * When resuming from a checkpoint of the same graph, the automata in the list are replaced by the
+         * saved automaton followed by the automata it still has to be combined with.
+         */
+
+        if(options.checkpointFile == null || options.treeReduction) return null;
+
+        String graph6 = Graph6.encode(graph);
+        int combinedBefore = 0;
+
+        if(options.resume && exists(options.checkpointFile)){
+            Checkpoint checkpoint;
+            try {
+                checkpoint = read(options.checkpointFile);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not resume from " + options.checkpointFile, e);
+            }
+            if(!checkpoint.combiner.equals(combiner) || !checkpoint.graph.equals(graph6)){
+                throw new RuntimeException(options.checkpointFile + " is a checkpoint of a different graph or combiner");
+            }
+
+            List<A> resumed = new ArrayList<>();
+            resumed.add(restore.apply(checkpoint.automaton));
+            for(int[] symbols : checkpoint.remaining){
+                A next = null;
+                for(A a : automatas){
+                    if(Arrays.equals(alphabet.apply(a).symbols, symbols)){
+                        next = a;
+                        break;
+                    }
+                }
+                if(next == null) throw new RuntimeException(options.checkpointFile + " does not match the automata of the graph");
+                resumed.add(next);
+            }
+
+            automatas.clear();
+            automatas.addAll(resumed);
+            combinedBefore = checkpoint.combined - 1;
+
+            if(options.verbose) System.out.println("Resuming from checkpoint - Number of combined automatas: " + checkpoint.combined + " - Number of States: " + checkpoint.automaton.numStates());
+        }
+
+        int[][] alphabets = new int[automatas.size()][];
+        for(int i = 0; i < alphabets.length; i++) alphabets[i] = alphabet.apply(automatas.get(i)).symbols;
+
+        return new Writer(options.checkpointFile, options.checkpointInterval, combiner, graph6, alphabets, combinedBefore);
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()){
+            int n = channel.read(buffer, position + buffer.position());
+            if(n < 0) throw new IOException("Checkpoint file is truncated");
+        }
+        buffer.flip();
+    }
+
+    static String getString(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    public static class Writer {
+        /*
+         * Saves a checkpoint after every interval steps of a fold without holding up the fold.
+         * The automata of a fold are not changed once their step is done, so taking a snapshot only keeps
+         * a reference to the arrays of the automaton, and the writing thread reads them while the next
+         * steps are computed. If the previous checkpoint is still being written when the next one is due,
+         * the new one is skipped rather than waited for, and the following step tries again.
+         */
+
+        final String fileName;
+        final int interval;
+        final String combiner;
+        final byte[] graph;
+        final int[][] alphabets;
+        final int combinedBefore;
+        final ExecutorService executor;
+        Future<?> pending;
+        int lastSaved;
+
+        Writer(String fileName, int interval, String combiner, String graph, int[][] alphabets, int combinedBefore){
+            this.fileName = fileName;
+            this.interval = interval;
+            this.combiner = combiner;
+            this.graph = graph.getBytes(StandardCharsets.UTF_8);
+            this.alphabets = alphabets;
+            this.combinedBefore = combinedBefore;
+            this.executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "checkpoint-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        public void stepCompleted(int folded, int[] symbols, int numStates, int startState, BitSet acceptingStates, int[] transitions){
+            stepCompleted(folded, symbols, numStates, startState, acceptingStates, IntTable.of(transitions));
+        }
+
+        public void stepCompleted(int folded, int[] symbols, int numStates, int startState, BitSet acceptingStates, IntTable transitions){
+            /**
+             * Called after the first folded automata of the fold have been combined into the given automaton,
+             * which has states 0 to numStates - 1. If acceptingStates is null then every state is accepting.
+             * The transitions are retained until they have been written, so the fold can free its own reference straight away.
+             */
+
+            if(folded - lastSaved < interval || folded >= alphabets.length) return;
+            if(pending != null && !pending.isDone()) return;
+
+            lastSaved = folded;
+            int[][] remaining = Arrays.copyOfRange(alphabets, folded, alphabets.length);
+            int combined = combinedBefore + folded;
+
+            transitions.retain();
+            pending = executor.submit(() -> {
+                try {
+                    write(combined, remaining, symbols, numStates, startState, acceptingStates, transitions);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    transitions.close();
+                }
+            });
+        }
+
+        void write(int combined, int[][] remaining, int[] symbols, int numStates, int startState, BitSet acceptingStates, IntTable transitions) throws IOException {
+            byte[] name = combiner.getBytes(StandardCharsets.UTF_8);
+
+            int headerBytes = 4 * 5 + name.length + 4 + graph.length + 4;
+            for(int[] a : remaining) headerBytes += 4 + 4 * a.length;
+            headerBytes = (headerBytes + 7) & ~7;
+
+            ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(headerBytes).putInt(combined);
+            header.putInt(name.length).put(name);
+            header.putInt(graph.length).put(graph);
+            header.putInt(remaining.length);
+            for(int[] a : remaining){
+                header.putInt(a.length);
+                for(int s : a) header.putInt(s);
+            }
+            header.position(0);
+
+            Path target = Path.of(fileName);
+            Path temp = Path.of(fileName + ".tmp");
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                       StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+                while(header.hasRemaining()) channel.write(header, header.position());
+                AutomataFile.write(channel, headerBytes, symbols, numStates, startState, acceptingStates, transitions);
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        public void finish(){
+            /**
+             * Waits for the checkpoint being written, if there is one, then removes the checkpoint
+             * since the check it was saved for is complete.
+             */
+
+            try {
+                if(pending != null) pending.get();
+                Files.deleteIfExists(Path.of(fileName));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | IOException e) {
+                e.printStackTrace();
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+}
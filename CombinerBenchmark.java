@@ -0,0 +1,442 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+
+public class CombinerBenchmark {
+    /*
+     * Benchmarks the steps of the automata combiner pipeline in isolation, and the whole of
+     * checkWordRepresentable for both combiners, over families of input graphs.
+     *
+     * It follows the same model as a JMH benchmark: each benchmark is warmed up for a number of
+     * iterations, then measured for a number of timed iterations. Any per-call setup (such as copying an
+     * automaton that the step changes in place) happens outside of the timed region, and results are
+     * written to a volatile field so the JIT cannot remove the work. Alongside the time per call,
+     * the bytes allocated per call and the allocation rate are reported from the thread allocation
+     * counters, matching the numbers given by the JMH GC profiler.
+     *
+     * Usage: java CombinerBenchmark [--bench regex] [--family wheel|examples|gnp|large|all]
+     *                               [--warmup n] [--iterations n] [--time ms] [--csv file]
+     */
+
+    static final int[][] EXAMPLE_4 = {{0,1,1,0},
+                                      {1,0,1,0},
+                                      {1,1,0,1},
+                                      {0,0,1,0}};
+    static final int[][] WHEEL_6 = {{0,1,0,0,1,1},
+                                    {1,0,1,0,0,1},
+                                    {0,1,0,1,0,1},
+                                    {0,0,1,0,1,1},
+                                    {1,0,0,1,0,1},
+                                    {1,1,1,1,1,0}};
+    static final int[][] WORD_REPRESENTABLE_6 = {{0,1,1,0,1,1},
+                                                 {1,0,1,0,0,1},
+                                                 {1,1,0,1,0,1},
+                                                 {0,0,1,0,1,1},
+                                                 {1,0,0,1,0,1},
+                                                 {1,1,1,1,1,0}};
+    static final int[][] EXAMPLE_7 = {{0,1,0,1,1,0,0},
+                                      {1,0,0,1,1,1,0},
+                                      {0,0,0,0,0,0,1},
+                                      {1,1,0,0,0,1,0},
+                                      {1,1,0,0,0,0,0},
+                                      {0,1,0,1,0,0,1},
+                                      {0,0,1,0,0,1,0}};
+    static final int[][] EXAMPLE_11 = {{0,1,0,1,0,1,0,1,0,1,0},
+                                       {1,0,0,1,0,1,1,0,0,0,1},
+                                       {0,0,0,0,0,0,1,0,1,0,0},
+                                       {1,1,0,0,1,0,0,1,0,1,1},
+                                       {0,0,0,1,0,0,1,0,0,1,1},
+                                       {0,1,0,0,0,0,0,0,1,0,0},
+                                       {0,1,1,0,1,0,1,0,1,0,0},
+                                       {0,0,0,1,0,0,0,1,0,0,1},
+                                       {0,1,0,1,0,0,1,0,1,1,0},
+                                       {1,0,0,1,0,1,1,0,0,0,1},
+                                       {0,0,0,0,0,0,1,0,1,0,0}};
+    static final int[][] EXAMPLE_12 = {{0,1,0,1,0,1,0,1,0,1,0,1},
+                                       {1,0,0,1,0,1,1,0,0,0,1,0},
+                                       {0,0,0,0,0,0,1,0,1,0,0,1},
+                                       {1,1,0,0,1,0,0,1,0,1,1,0},
+                                       {0,0,0,1,0,0,1,0,0,1,1,0},
+                                       {0,1,0,0,0,0,0,0,1,0,0,1},
+                                       {0,1,1,0,1,0,1,0,1,0,0,0},
+                                       {0,0,0,1,0,0,0,1,0,0,1,0},
+                                       {0,1,0,1,0,0,1,0,1,1,0,1},
+                                       {1,0,0,1,0,1,1,0,0,0,1,0},
+                                       {0,0,0,0,0,0,1,0,1,0,0,1},
+                                       {0,0,1,0,0,1,0,0,1,0,0,0}};
+
+    static volatile Object blackhole;
+
+    public static void main(String[] args) throws IOException {
+        Pattern bench = Pattern.compile(".*");
+        String family = "all";
+        int warmup = 3;
+        int iterations = 5;
+        long iterationTime = 500;
+        String csv = null;
+
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "--bench": bench = Pattern.compile(args[++i]); break;
+                case "--family": family = args[++i]; break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--time": iterationTime = Long.parseLong(args[++i]); break;
+                case "--csv": csv = args[++i]; break;
+                default: throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        System.out.println(String.format("%-32s %-16s %14s %12s %16s %12s", "Benchmark", "Graph", "Time (us/op)", "Error", "Alloc (B/op)", "Alloc (MB/s)"));
+
+        for(Map.Entry<String, boolean[][]> input : inputs(family).entrySet()){
+            for(Map.Entry<String, Function<boolean[][], Supplier<Runnable>>> b : benchmarks().entrySet()){
+                if(!bench.matcher(b.getKey()).find()) continue;
+
+                Supplier<Runnable> setup = b.getValue().apply(input.getValue());
+                if(setup == null) continue;
+
+                Result r = measure(b.getKey(), input.getKey(), setup, warmup, iterations, iterationTime);
+                results.add(r);
+                System.out.println(r);
+            }
+        }
+
+        if(csv != null){
+            try(PrintWriter writer = new PrintWriter(new FileWriter(csv))){
+                writer.println("benchmark,graph,ns_per_op,error_ns,bytes_per_op,alloc_mb_per_s");
+                for(Result r : results){
+                    writer.println(r.benchmark + "," + r.graph + "," + r.nsPerOp + "," + r.errorNs + "," + r.bytesPerOp + "," + r.allocRate());
+                }
+            }
+        }
+    }
+
+    public static Map<String, Function<boolean[][], Supplier<Runnable>>> benchmarks(){
+        /**
+         * Returns every benchmark by name. Each one takes a graph and returns a setup function,
+         * which prepares the input for one call and returns the call to be timed.
+         * A benchmark returns null for graphs it cannot run on in a reasonable time.
+         */
+
+        Map<String, Function<boolean[][], Supplier<Runnable>>> benchmarks = new LinkedHashMap<>();
+        //Graph reduction is left off so the whole graph goes through the automata being measured
+        CombinerOptions options = new CombinerOptions().threads(1).writeAutomata(false).reduceGraph(false);
+
+        benchmarks.put("full.graphToAutomata", graph -> {
+            if(graph.length > FULL_LIMIT) return null;
+            int[][] matrix = toIntMatrix(graph);
+            return () -> () -> blackhole = FullAutomataCombiner.graphToAutomata(matrix);
+        });
+        benchmarks.put("quick.graphToAutomata", graph -> {
+            return () -> () -> blackhole = QuickAutomataCombiner.graphToAutomata(graph);
+        });
+
+        //The single step benchmarks run on the middle step of the fold, where the products are largest
+        benchmarks.put("full.combineAutomatas", graph -> {
+            FullAutomataCombiner.Automata[] step = fullStep(graph, options);
+            if(step == null) return null;
+            return () -> () -> blackhole = FullAutomataCombiner.combineAutomatas(step[0], step[1]);
+        });
+        benchmarks.put("full.combineReachable", graph -> {
+            FullAutomataCombiner.Automata[] step = fullStep(graph, options);
+            if(step == null) return null;
+            return () -> () -> blackhole = FullAutomataCombiner.combineReachable(step[0], step[1]);
+        });
+        benchmarks.put("full.trimAutomata", graph -> {
+            FullAutomataCombiner.Automata[] step = fullStep(graph, options);
+            if(step == null) return null;
+            FullAutomataCombiner.Automata product = FullAutomataCombiner.combineAutomatas(step[0], step[1]);
+            return () -> {
+                FullAutomataCombiner.Automata a = product.clone();
+                return () -> blackhole = FullAutomataCombiner.trimAutomata(a);
+            };
+        });
+        benchmarks.put("full.renameAutomata", graph -> {
+            FullAutomataCombiner.Automata[] step = fullStep(graph, options);
+            if(step == null) return null;
+            FullAutomataCombiner.Automata trimmed = FullAutomataCombiner.trimAutomata(FullAutomataCombiner.combineAutomatas(step[0], step[1]));
+            return () -> {
+                FullAutomataCombiner.Automata a = trimmed.clone();
+                return () -> blackhole = FullAutomataCombiner.renameAutomata(a);
+            };
+        });
+        benchmarks.put("full.hopcroft", graph -> {
+            FullAutomataCombiner.Automata[] step = fullStep(graph, options);
+            if(step == null) return null;
+            FullAutomataCombiner.Automata product = FullAutomataCombiner.combineReachable(step[0], step[1]);
+            return () -> {
+                FullAutomataCombiner.Automata a = product.clone();
+                return () -> blackhole = FullAutomataCombiner.hopcroft(a);
+            };
+        });
+        benchmarks.put("full.mergeDuplicates", graph -> {
+            FullAutomataCombiner.Automata[] step = fullStep(graph, options);
+            if(step == null) return null;
+            FullAutomataCombiner.Automata product = FullAutomataCombiner.combineReachable(step[0], step[1]);
+            return () -> {
+                FullAutomataCombiner.Automata a = product.clone();
+                return () -> blackhole = FullAutomataCombiner.mergeDuplicates(a);
+            };
+        });
+        benchmarks.put("quick.combineAutomatas", graph -> {
+            QuickAutomataCombiner.Automata[] step = quickStep(graph, options);
+            if(step == null) return null;
+            return () -> () -> blackhole = QuickAutomataCombiner.combineAutomatas(step[0], step[1]);
+        });
+        benchmarks.put("quick.combineReachable", graph -> {
+            QuickAutomataCombiner.Automata[] step = quickStep(graph, options);
+            if(step == null) return null;
+            return () -> () -> blackhole = QuickAutomataCombiner.combineReachable(step[0], step[1]);
+        });
+        benchmarks.put("quick.trimAutomata", graph -> {
+            QuickAutomataCombiner.Automata[] step = quickStep(graph, options);
+            if(step == null) return null;
+            QuickAutomataCombiner.Automata product = QuickAutomataCombiner.combineAutomatas(step[0], step[1]);
+            return () -> () -> blackhole = QuickAutomataCombiner.trimAutomata(product);
+        });
+
+        //findGroups and checkConstraints run on the final combined automaton
+        benchmarks.put("quick.findGroups", graph -> {
+            QuickAutomataCombiner.Automata combined = quickCombined(graph, options);
+            if(combined == null) return null;
+            return () -> () -> blackhole = QuickAutomataCombiner.findGroups(combined);
+        });
+        benchmarks.put("quick.checkConstraints", graph -> {
+            QuickAutomataCombiner.Automata combined = quickCombined(graph, options);
+            if(combined == null) return null;
+            List<QuickAutomataCombiner.Automata> groups = QuickAutomataCombiner.findGroups(combined);
+            return () -> () -> {
+                boolean any = false;
+                for(QuickAutomataCombiner.Automata group : groups) any |= QuickAutomataCombiner.checkConstraints(group, graph);
+                blackhole = any;
+            };
+        });
+
+        benchmarks.put("full.checkWordRepresentable", graph -> {
+            if(graph.length > FULL_LIMIT) return null;
+            int[][] matrix = toIntMatrix(graph);
+            return () -> () -> blackhole = FullAutomataCombiner.checkWordRepresentable(matrix, options);
+        });
+        benchmarks.put("full.symmetryReduction", graph -> {
+            if(graph.length > FULL_LIMIT) return null;
+            return () -> () -> blackhole = SymmetryReduction.check(graph, SymmetryReduction.MAX_GROUP_SIZE, false);
+        });
+        benchmarks.put("symbolic.check", graph -> {
+            return () -> () -> blackhole = SymbolicChecker.check(graph, false);
+        });
+        benchmarks.put("quick.checkWordRepresentable", graph -> {
+            return () -> () -> blackhole = QuickAutomataCombiner.checkWordRepresentable(graph, options);
+        });
+
+        return benchmarks;
+    }
+
+    //FullAutomataCombiner takes too long on graphs larger than this to be benchmarked repeatedly
+    static final int FULL_LIMIT = 7;
+
+    public static Map<String, boolean[][]> inputs(String family){
+        /**
+         * Returns the graphs of the given family by name.
+         */
+
+        Map<String, boolean[][]> inputs = new LinkedHashMap<>();
+        boolean all = family.equals("all");
+
+        if(all || family.equals("wheel")){
+            for(int n = 5; n <= 8; n++) inputs.put("wheel-" + n, wheel(n));
+        }
+        if(all || family.equals("examples")){
+            inputs.put("example-4", toBoolMatrix(EXAMPLE_4));
+            inputs.put("wheel-6-example", toBoolMatrix(WHEEL_6));
+            inputs.put("wr-6-example", toBoolMatrix(WORD_REPRESENTABLE_6));
+            inputs.put("example-7", toBoolMatrix(EXAMPLE_7));
+            inputs.put("example-11", toBoolMatrix(EXAMPLE_11));
+        }
+        if(all || family.equals("gnp")){
+            for(int n : new int[]{6, 7, 9}){
+                for(double p : new double[]{0.3, 0.5, 0.7}){
+                    inputs.put("gnp-" + n + "-" + p, randomGraph(n, p, 4011));
+                }
+            }
+        }
+        //The 12 vertex example is much slower to check than the others so it is only run when asked for
+        if(family.equals("large")){
+            inputs.put("example-12", toBoolMatrix(EXAMPLE_12));
+        }
+
+        return inputs;
+    }
+
+    public static boolean[][] wheel(int n){
+        /**
+         * Returns the wheel graph with n vertices: a cycle of n-1 vertices and a hub joined to all of them.
+         */
+
+        boolean[][] graph = new boolean[n][n];
+        for(int i = 0; i < n - 1; i++){
+            int j = (i + 1) % (n - 1);
+            graph[i][j] = graph[j][i] = true;
+            graph[i][n - 1] = graph[n - 1][i] = true;
+        }
+        return graph;
+    }
+
+    public static boolean[][] randomGraph(int n, double p, long seed){
+        /**
+         * Returns a G(n,p) random graph from the given seed.
+         */
+
+        Random random = new Random(seed + n * 31L + Double.hashCode(p));
+        boolean[][] graph = new boolean[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = i + 1; j < n; j++){
+                if(random.nextDouble() < p) graph[i][j] = graph[j][i] = true;
+            }
+        }
+        return graph;
+    }
+
+    static FullAutomataCombiner.Automata[] fullStep(boolean[][] graph, CombinerOptions options){
+        /**
+         * Folds the first half of the automata of the graph and returns the partial result with the next automaton.
+         */
+
+        if(graph.length > FULL_LIMIT) return null;
+        List<FullAutomataCombiner.Automata> automatas = FullAutomataCombiner.orderAutomatas(FullAutomataCombiner.graphToAutomata(toIntMatrix(graph)), graph, options);
+        if(automatas.size() < 2) return null;
+
+        int half = automatas.size() / 2;
+        FullAutomataCombiner.Automata combined = FullAutomataCombiner.reduceAutomatas(automatas.subList(0, half), options);
+        return new FullAutomataCombiner.Automata[]{combined, automatas.get(half)};
+    }
+
+    static QuickAutomataCombiner.Automata[] quickStep(boolean[][] graph, CombinerOptions options){
+        /**
+         * Folds the first half of the automata of the graph and returns the partial result with the next automaton.
+         */
+
+        List<QuickAutomataCombiner.Automata> automatas = QuickAutomataCombiner.orderAutomatas(QuickAutomataCombiner.graphToAutomata(graph), graph, options);
+        if(automatas.size() < 2) return null;
+
+        int half = automatas.size() / 2;
+        QuickAutomataCombiner.Automata combined = QuickAutomataCombiner.reduceAutomatas(automatas.subList(0, half), options);
+        return new QuickAutomataCombiner.Automata[]{combined, automatas.get(half)};
+    }
+
+    static QuickAutomataCombiner.Automata quickCombined(boolean[][] graph, CombinerOptions options){
+        List<QuickAutomataCombiner.Automata> automatas = QuickAutomataCombiner.orderAutomatas(QuickAutomataCombiner.graphToAutomata(graph), graph, options);
+        if(automatas.isEmpty()) return null;
+        return QuickAutomataCombiner.reduceAutomatas(automatas, options);
+    }
+
+    static Result measure(String benchmark, String graph, Supplier<Runnable> setup, int warmup, int iterations, long iterationTime){
+        /**
+         * Runs the warmup iterations and then the measured iterations of one benchmark.
+         */
+
+        for(int i = 0; i < warmup; i++) iteration(setup, iterationTime);
+
+        double[] nsPerOp = new double[iterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        for(int i = 0; i < iterations; i++){
+            long[] r = iteration(setup, iterationTime);
+            nsPerOp[i] = (double) r[1] / r[0];
+            totalOps += r[0];
+            totalBytes += r[2];
+        }
+
+        double mean = 0;
+        for(double t : nsPerOp) mean += t;
+        mean /= iterations;
+        double variance = 0;
+        for(double t : nsPerOp) variance += (t - mean) * (t - mean);
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+
+        return new Result(benchmark, graph, mean, error, (double) totalBytes / totalOps);
+    }
+
+    static long[] iteration(Supplier<Runnable> setup, long iterationTime){
+        /**
+         * Calls the benchmark until the iteration time is used up.
+         * Returns the number of calls, the nanoseconds spent in them and the bytes they allocated.
+         */
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long ops = 0, nanos = 0, bytes = 0;
+        long deadline = System.nanoTime() + iterationTime * 1000000;
+        do {
+            Runnable op = setup.get();
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            op.run();
+            long end = System.nanoTime();
+            bytes += threads.getThreadAllocatedBytes(thread) - allocated;
+            nanos += end - start;
+            ops++;
+        } while(System.nanoTime() < deadline);
+
+        return new long[]{ops, nanos, bytes};
+    }
+
+    static int[][] toIntMatrix(boolean[][] graph){
+        int[][] matrix = new int[graph.length][graph.length];
+        for(int i = 0; i < graph.length; i++){
+            for(int j = 0; j < graph.length; j++) matrix[i][j] = graph[i][j] ? 1 : 0;
+        }
+        return matrix;
+    }
+
+    static boolean[][] toBoolMatrix(int[][] matrix){
+        boolean[][] graph = new boolean[matrix.length][matrix.length];
+        for(int i = 0; i < matrix.length; i++){
+            for(int j = 0; j < matrix.length; j++) graph[i][j] = matrix[i][j] == 1;
+        }
+        return graph;
+    }
+
+
+    public static class Result {
+
+        String benchmark;
+        String graph;
+        double nsPerOp;
+        double errorNs;
+        double bytesPerOp;
+
+        public Result(String benchmark, String graph, double nsPerOp, double errorNs, double bytesPerOp){
+            this.benchmark = benchmark;
+            this.graph = graph;
+            this.nsPerOp = nsPerOp;
+            this.errorNs = errorNs;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        public double allocRate(){
+            /**
+             * Returns the allocation rate in megabytes per second while the benchmark is running.
+             */
+
+            return bytesPerOp / nsPerOp * 1e9 / (1024 * 1024);
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%-32s %-16s %14.3f %12.3f %16.0f %12.1f", benchmark, graph, nsPerOp / 1000, errorNs / 1000, bytesPerOp, allocRate());
+        }
+    }
+}
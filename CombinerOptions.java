@@ -0,0 +1,224 @@
+import java.util.concurrent.ForkJoinPool;
+
+
+public class CombinerOptions {
+    /*
+     * Settings for how FullAutomataCombiner and QuickAutomataCombiner check a graph.
+     * The defaults match the behaviour of checkWordRepresentable(transitionMatrix).
+     */
+
+    //Print the number of states after every combine step
+    boolean verbose = false;
+
+    //Build only the reachable part of each product instead of the full product followed by a trim
+    boolean reachableProduct = true;
+
+    //Minimise every intermediate automaton with Hopcrofts algorithm (FullAutomataCombiner only)
+    boolean minimise = true;
+
+    //Search the product of the pair automata symbolically with BDDs instead of building any automata (see SymbolicChecker)
+    boolean symbolic = false;
+
+    //When not minimising, still merge states with the same acceptance and targets after every step, which is much cheaper (FullAutomataCombiner only)
+    boolean deduplicate = true;
+
+    //Search the product of all of the pair automata keeping one state per orbit of the graph's automorphisms, instead of folding them (FullAutomataCombiner only, up to 8 vertices)
+    boolean symmetry = false;
+
+    //Drop the components that can no longer satisfy the non-edge constraints after every step, and stop once none are left (QuickAutomataCombiner only)
+    boolean earlyRejection = true;
+
+    //Remove twins, split off components and test graphs with a universal vertex directly before building any automata (see GraphReduction).
+    //FullAutomataCombiner only reduces when it is not writing out the automaton, so that the file still holds the automaton of the whole graph
+    boolean reduceGraph = true;
+
+    //Decides the order the automata are combined in
+    FoldPlanner planner = FoldPlanner.greedyOverlap();
+
+    //Number of threads used to build each product, 1 builds them on the calling thread
+    int threads = Runtime.getRuntime().availableProcessors();
+    ForkJoinPool pool;
+
+    //Combine the automata pairwise in a balanced tree instead of folding them in order
+    boolean treeReduction = false;
+
+    //Largest total number of product states the tree reduction may build at once
+    long memoryBudget = 1L << 26;
+
+    //Save the final automaton to automata.bin (FullAutomataCombiner only)
+    boolean writeAutomata = true;
+
+    //Receives the metrics of every combine step, such as a MetricsReport
+    StepMetrics.Listener listener = null;
+
+    //Save the combined automaton and the automata left to combine to this file every checkpointInterval steps of the fold (not used by the tree reduction)
+    String checkpointFile = null;
+    int checkpointInterval = 1;
+
+    //Carry on from the checkpoint file if there is one, instead of starting again
+    boolean resume = false;
+
+    //Looks up the verdict of graphs isomorphic to ones already checked instead of checking them again
+    VerdictCache cache = null;
+
+    //Store the transition tables of the combined automata off the heap, freeing each one once the next step has been built (QuickAutomataCombiner only)
+    boolean offHeap = false;
+
+    //Explore a product on disk instead of in memory once the memory its exploration is estimated to need passes this many bytes (QuickAutomataCombiner only)
+    long explorationBudget = Runtime.getRuntime().maxMemory() / 2;
+
+    //Directory the runs of an exploration on disk are kept in, the default temporary directory if null
+    String spillDirectory = null;
+
+    //Race several differently configured combiners on what is left of the graph and take the first verdict (see Portfolio)
+    Portfolio portfolio = null;
+
+    public CombinerOptions verbose(boolean verbose){
+        this.verbose = verbose;
+        return this;
+    }
+
+    public CombinerOptions reachableProduct(boolean reachableProduct){
+        this.reachableProduct = reachableProduct;
+        return this;
+    }
+
+    public CombinerOptions minimise(boolean minimise){
+        this.minimise = minimise;
+        return this;
+    }
+
+    public CombinerOptions symbolic(boolean symbolic){
+        this.symbolic = symbolic;
+        return this;
+    }
+
+    public CombinerOptions deduplicate(boolean deduplicate){
+        this.deduplicate = deduplicate;
+        return this;
+    }
+
+    public CombinerOptions symmetry(boolean symmetry){
+        this.symmetry = symmetry;
+        return this;
+    }
+
+    public CombinerOptions earlyRejection(boolean earlyRejection){
+        this.earlyRejection = earlyRejection;
+        return this;
+    }
+
+    public CombinerOptions reduceGraph(boolean reduceGraph){
+        this.reduceGraph = reduceGraph;
+        return this;
+    }
+
+    public CombinerOptions planner(FoldPlanner planner){
+        this.planner = planner;
+        return this;
+    }
+
+    public CombinerOptions threads(int threads){
+        if(threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        this.threads = threads;
+        this.pool = null;
+        return this;
+    }
+
+    public CombinerOptions treeReduction(boolean treeReduction){
+        this.treeReduction = treeReduction;
+        return this;
+    }
+
+    public CombinerOptions memoryBudget(long memoryBudget){
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    public CombinerOptions writeAutomata(boolean writeAutomata){
+        this.writeAutomata = writeAutomata;
+        return this;
+    }
+
+    public CombinerOptions listener(StepMetrics.Listener listener){
+        this.listener = listener;
+        return this;
+    }
+
+    public CombinerOptions checkpoint(String fileName, int interval){
+        if(interval < 1) throw new IllegalArgumentException("checkpoint interval must be at least 1");
+        this.checkpointFile = fileName;
+        this.checkpointInterval = interval;
+        return this;
+    }
+
+    public CombinerOptions resume(boolean resume){
+        this.resume = resume;
+        return this;
+    }
+
+    public CombinerOptions cache(VerdictCache cache){
+        this.cache = cache;
+        return this;
+    }
+
+    public CombinerOptions offHeap(boolean offHeap){
+        this.offHeap = offHeap;
+        return this;
+    }
+
+    public CombinerOptions explorationBudget(long bytes){
+        this.explorationBudget = bytes;
+        return this;
+    }
+
+    public CombinerOptions spillDirectory(String directory){
+        this.spillDirectory = directory;
+        return this;
+    }
+
+    public CombinerOptions portfolio(Portfolio portfolio){
+        this.portfolio = portfolio;
+        return this;
+    }
+
+    public static CombinerOptions fromArgs(String[] args){
+        /**
+         * Reads the options given on the command line of the combiners:
+         * --checkpoint <file>, --every <steps>, --resume, --symmetry, --symbolic, --off-heap,
+         * --exploration-budget <bytes>, --spill-dir <directory> and --portfolio
+         */
+
+        CombinerOptions options = new CombinerOptions();
+        String checkpointFile = null;
+        int interval = 1;
+
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "--checkpoint": checkpointFile = args[++i]; break;
+                case "--every": interval = Integer.parseInt(args[++i]); break;
+                case "--resume": options.resume(true); break;
+                case "--symmetry": options.symmetry(true); break;
+                case "--symbolic": options.symbolic(true); break;
+                case "--off-heap": options.offHeap(true); break;
+                case "--exploration-budget": options.explorationBudget(Long.parseLong(args[++i])); break;
+                case "--spill-dir": options.spillDirectory(args[++i]); break;
+                case "--portfolio": options.portfolio(Portfolio.standard()); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        if(checkpointFile != null) options.checkpoint(checkpointFile, interval);
+        return options;
+    }
+
+    public synchronized ForkJoinPool pool(){
+        /**
+         * Returns the pool used to build products, or null if they should be built on the calling thread.
+         */
+
+        if(threads == 1) return null;
+        if(pool == null) pool = new ForkJoinPool(threads);
+        return pool;
+    }
+}
@@ -0,0 +1,378 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+
+public class ExternalExploration implements AutoCloseable {
+    /*
+     * Breadth first search over a state space too large to keep in memory, with the frontier and the
+     * visited states kept on disk as runs: files of sorted, distinct longs.
+     *
+     * Every level the successors of the frontier are collected in a buffer of runLength longs, which is
+     * sorted and written out as a run whenever it fills up. The runs are merged, and the states already
+     * visited are removed by merging against the visited runs at the same time (delayed duplicate detection),
+     * leaving the next frontier. Each frontier is disjoint from everything before it, so it is kept as one
+     * more visited run, and the visited runs are merged together whenever there are more than MAX_RUNS.
+     * Every pass over the disk is sequential, and only the buffer and one block per open run are held in memory.
+     *
+     * The runs are created in their own temporary directory, which is removed when the exploration is closed.
+     */
+
+    //Most runs that are merged in one pass
+    static final int MAX_RUNS = 32;
+
+    //Longs read or written at a time for each open run
+    static final int BLOCK_LONGS = 1 << 13;
+
+    final Path directory;
+    final int runLength;
+    int nextRun = 0;
+
+    public interface Successors {
+        void successors(long state, LongConsumer out);
+    }
+
+    public ExternalExploration(String parent, long memoryBytes){
+        /**
+         * Creates the runs in a new directory inside parent (the default temporary directory if parent is null),
+         * sorting up to about a quarter of memoryBytes in memory at a time.
+         */
+
+        this.runLength = (int) Math.max(1 << 10, Math.min(1 << 27, memoryBytes / 4 / 8));
+        try {
+            this.directory = parent == null ? Files.createTempDirectory("exploration") : Files.createTempDirectory(Path.of(parent), "exploration");
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create a directory for the exploration", e);
+        }
+    }
+
+    public Run reachable(Run sources, Successors successors){
+        /**
+         * Returns every state reachable from the sources, including the sources themselves, as one run.
+         * The exploration takes ownership of the sources run.
+         */
+
+        List<Run> visited = new ArrayList<>();
+        visited.add(sources);
+        Run frontier = sources;
+
+        while(frontier.size > 0){
+            Sorter next = new Sorter(true);
+            try(RunReader reader = frontier.reader()){
+                while(reader.hasNext()) successors.successors(reader.next(), next::add);
+            }
+            Run candidates = next.finish();
+
+            Run fresh = subtract(candidates, visited);
+            candidates.delete();
+
+            visited.add(fresh);
+            frontier = fresh;
+
+            //The frontier is still to be expanded, so only the runs before it are merged
+            if(visited.size() > MAX_RUNS){
+                List<Run> older = visited.subList(0, visited.size() - 1);
+                Run all = merge(older, false);
+                for(Run r : older) r.delete();
+                visited = new ArrayList<>();
+                visited.add(all);
+                visited.add(fresh);
+            }
+        }
+
+        if(visited.size() == 1) return visited.get(0);
+        Run all = merge(visited, false);
+        for(Run r : visited) r.delete();
+        return all;
+    }
+
+    public RunWriter writer(){
+        /**
+         * Returns a writer for a new run. The longs have to be written in increasing order.
+         */
+
+        return new RunWriter(directory.resolve("run" + (nextRun++)));
+    }
+
+    public Sorter sorter(boolean distinct){
+        /**
+         * Returns a sorter that turns longs added in any order into one run,
+         * keeping only one copy of each if distinct is set.
+         */
+
+        return new Sorter(distinct);
+    }
+
+    Run subtract(Run from, List<Run> remove){
+        //Writes the longs of from that are in none of the runs in remove, which is a sequential merge of all of them
+        List<RunReader> readers = new ArrayList<>();
+        try(RunReader source = from.reader(); RunWriter out = writer()){
+            for(Run r : remove) readers.add(r.reader());
+            PriorityQueue<RunReader> queue = queue(readers);
+
+            while(source.hasNext()){
+                long value = source.next();
+                while(!queue.isEmpty() && queue.peek().peek() < value){
+                    RunReader r = queue.poll();
+                    r.next();
+                    if(r.hasNext()) queue.add(r);
+                }
+                if(queue.isEmpty() || queue.peek().peek() != value) out.add(value);
+            }
+            return out.finish();
+        } finally {
+            for(RunReader r : readers) r.close();
+        }
+    }
+
+    Run merge(List<Run> runs, boolean distinct){
+        //Merges the runs into one, MAX_RUNS at a time
+        List<Run> level = runs;
+        boolean owned = false;
+        while(level.size() > MAX_RUNS){
+            List<Run> next = new ArrayList<>();
+            for(int i = 0; i < level.size(); i += MAX_RUNS){
+                next.add(mergeOnce(level.subList(i, Math.min(level.size(), i + MAX_RUNS)), distinct));
+            }
+            if(owned) for(Run r : level) r.delete();
+            level = next;
+            owned = true;
+        }
+
+        Run merged = mergeOnce(level, distinct);
+        if(owned) for(Run r : level) r.delete();
+        return merged;
+    }
+
+    private Run mergeOnce(List<Run> runs, boolean distinct){
+        List<RunReader> readers = new ArrayList<>();
+        try(RunWriter out = writer()){
+            for(Run r : runs) readers.add(r.reader());
+            PriorityQueue<RunReader> queue = queue(readers);
+
+            boolean first = true;
+            long last = 0;
+            while(!queue.isEmpty()){
+                RunReader r = queue.poll();
+                long value = r.next();
+                if(r.hasNext()) queue.add(r);
+                if(distinct && !first && value == last) continue;
+                out.add(value);
+                last = value;
+                first = false;
+            }
+            return out.finish();
+        } finally {
+            for(RunReader r : readers) r.close();
+        }
+    }
+
+    private static PriorityQueue<RunReader> queue(List<RunReader> readers){
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, readers.size()), Comparator.comparingLong(RunReader::peek));
+        for(RunReader r : readers){
+            if(r.hasNext()) queue.add(r);
+        }
+        return queue;
+    }
+
+    @Override
+    public void close(){
+        try(Stream<Path> files = Files.list(directory)){
+            for(Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    public static class Run {
+        /*
+         * A file of size sorted longs.
+         */
+
+        final Path path;
+        final long size;
+
+        Run(Path path, long size){
+            this.path = path;
+            this.size = size;
+        }
+
+        public long size(){
+            return size;
+        }
+
+        public RunReader reader(){
+            return new RunReader(path);
+        }
+
+        public void delete(){
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+
+    public static class RunWriter implements AutoCloseable {
+
+        final Path path;
+        final FileChannel channel;
+        final ByteBuffer block = ByteBuffer.allocate(8 * BLOCK_LONGS);
+        long size = 0;
+
+        RunWriter(Path path){
+            this.path = path;
+            try {
+                this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not create " + path, e);
+            }
+        }
+
+        public void add(long value){
+            if(!block.hasRemaining()) flush();
+            block.putLong(value);
+            size++;
+        }
+
+        public Run finish(){
+            /**
+             * Writes out the rest of the run and closes the file.
+             */
+
+            close();
+            return new Run(path, size);
+        }
+
+        private void flush(){
+            block.flip();
+            try {
+                while(block.hasRemaining()) channel.write(block);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not write to " + path, e);
+            }
+            block.clear();
+        }
+
+        @Override
+        public void close(){
+            if(!channel.isOpen()) return;
+            flush();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not write to " + path, e);
+            }
+        }
+    }
+
+
+    public static class RunReader implements AutoCloseable {
+
+        final Path path;
+        final FileChannel channel;
+        final ByteBuffer block = ByteBuffer.allocate(8 * BLOCK_LONGS);
+
+        RunReader(Path path){
+            this.path = path;
+            try {
+                this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not open " + path, e);
+            }
+            block.limit(0);
+        }
+
+        public boolean hasNext(){
+            if(block.hasRemaining()) return true;
+            block.clear();
+            try {
+                while(block.position() % 8 != 0 || block.position() == 0){
+                    if(channel.read(block) < 0) break;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read " + path, e);
+            }
+            block.flip();
+            return block.hasRemaining();
+        }
+
+        public long peek(){
+            return block.getLong(block.position());
+        }
+
+        public long next(){
+            if(!hasNext()) throw new IllegalStateException("End of " + path);
+            return block.getLong();
+        }
+
+        @Override
+        public void close(){
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+
+    public class Sorter {
+        /*
+         * Collects longs in a buffer, writing it out as a sorted run each time it fills up.
+         */
+
+        final boolean distinct;
+        final long[] buffer = new long[runLength];
+        int size = 0;
+        final List<Run> runs = new ArrayList<>();
+
+        Sorter(boolean distinct){
+            this.distinct = distinct;
+        }
+
+        public void add(long value){
+            if(size == buffer.length) spill();
+            buffer[size++] = value;
+        }
+
+        private void spill(){
+            Arrays.sort(buffer, 0, size);
+            try(RunWriter out = writer()){
+                for(int i = 0; i < size; i++){
+                    if(distinct && i > 0 && buffer[i] == buffer[i - 1]) continue;
+                    out.add(buffer[i]);
+                }
+                runs.add(out.finish());
+            }
+            size = 0;
+        }
+
+        public Run finish(){
+            /**
+             * Returns everything that was added as one run.
+             */
+
+            if(size > 0 || runs.isEmpty()) spill();
+            if(runs.size() == 1) return runs.get(0);
+
+            Run merged = merge(runs, distinct);
+            for(Run r : runs) r.delete();
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+
+public interface FoldPlanner {
+    /*
+     * Decides the order that the edge automata of a graph are folded together in.
+     * The intermediate automata can differ in size by orders of magnitude depending on this order,
+     * so the planners try to keep the accumulated alphabet small and to finish off each vertex
+     * (include every automaton that uses it) as early as possible.
+     *
+     * alphabets[i] holds the vertices that automaton i reads, graph is the adjacency matrix,
+     * and the returned array lists the automata in the order they should be combined.
+     */
+
+    int[] plan(int[][] alphabets, boolean[][] graph);
+
+    default String name(){
+        return "custom";
+    }
+
+    public static FoldPlanner inOrder(){
+        /**
+         * Combines the automata in the order they were created.
+         */
+
+        return named("in-order", (alphabets, graph) -> identity(alphabets.length));
+    }
+
+    public static FoldPlanner shuffled(long seed){
+        /**
+         * Combines the automata in a random order, to be used as a baseline for the other planners.
+         */
+
+        return named("shuffled(" + seed + ")", (alphabets, graph) -> {
+            List<Integer> order = new ArrayList<>();
+            for(int i = 0; i < alphabets.length; i++) order.add(i);
+            Collections.shuffle(order, new Random(seed));
+            return order.stream().mapToInt(Integer::intValue).toArray();
+        });
+    }
+
+    public static FoldPlanner greedyOverlap(){
+        /**
+         * Repeatedly picks the automaton that adds the fewest new letters to the accumulated alphabet,
+         * breaking ties by the most letters shared with it and then by the highest vertex degree.
+         */
+
+        return named("greedy-overlap", (alphabets, graph) -> {
+            int[] degree = degrees(graph);
+            boolean[] inAlphabet = new boolean[graph.length];
+            boolean[] used = new boolean[alphabets.length];
+            int[] order = new int[alphabets.length];
+
+            for(int step = 0; step < alphabets.length; step++){
+                int best = -1;
+                int bestNew = 0, bestShared = 0, bestDegree = 0;
+                for(int i = 0; i < alphabets.length; i++){
+                    if(used[i]) continue;
+
+                    int added = 0, shared = 0, degreeSum = 0;
+                    for(int v : alphabets[i]){
+                        if(inAlphabet[v]) shared++;
+                        else added++;
+                        degreeSum += degree[v];
+                    }
+
+                    if(best == -1 || added < bestNew
+                    || (added == bestNew && (shared > bestShared || (shared == bestShared && degreeSum > bestDegree)))){
+                        best = i;
+                        bestNew = added;
+                        bestShared = shared;
+                        bestDegree = degreeSum;
+                    }
+                }
+
+                used[best] = true;
+                order[step] = best;
+                for(int v : alphabets[best]) inAlphabet[v] = true;
+            }
+
+            return order;
+        });
+    }
+
+    public static FoldPlanner byDegree(){
+        /**
+         * Orders the vertices from highest to lowest degree and folds the automata vertex by vertex.
+         */
+
+        return named("degree", (alphabets, graph) -> {
+            int[] degree = degrees(graph);
+            Integer[] vertices = new Integer[graph.length];
+            for(int v = 0; v < graph.length; v++) vertices[v] = v;
+            Arrays.sort(vertices, (v1, v2) -> degree[v2] - degree[v1]);
+            return byVertexOrder(alphabets, Arrays.stream(vertices).mapToInt(Integer::intValue).toArray());
+        });
+    }
+
+    public static FoldPlanner bfs(){
+        /**
+         * Orders the vertices by a breadth first search of the graph, starting each
+         * component from its highest degree vertex, and folds the automata vertex by vertex.
+         */
+
+        return named("bfs", (alphabets, graph) -> {
+            int n = graph.length;
+            int[] degree = degrees(graph);
+            boolean[] seen = new boolean[n];
+            int[] vertices = new int[n];
+            int tail = 0;
+
+            while(tail < n){
+                int root = -1;
+                for(int v = 0; v < n; v++){
+                    if(!seen[v] && (root == -1 || degree[v] > degree[root])) root = v;
+                }
+                seen[root] = true;
+                int head = tail;
+                vertices[tail++] = root;
+
+                while(head < tail){
+                    int current = vertices[head++];
+                    for(int v = 0; v < n; v++){
+                        if(graph[current][v] && !seen[v]){
+                            seen[v] = true;
+                            vertices[tail++] = v;
+                        }
+                    }
+                }
+            }
+
+            return byVertexOrder(alphabets, vertices);
+        });
+    }
+
+    public static FoldPlanner degeneracy(){
+        /**
+         * Orders the vertices by reversed degeneracy order (repeatedly removing the vertex with the
+         * fewest remaining neighbours), so the densest core is folded first.
+         */
+
+        return named("degeneracy", (alphabets, graph) -> {
+            int n = graph.length;
+            int[] degree = degrees(graph);
+            boolean[] removed = new boolean[n];
+            int[] vertices = new int[n];
+
+            for(int i = n - 1; i >= 0; i--){
+                int next = -1;
+                for(int v = 0; v < n; v++){
+                    if(!removed[v] && (next == -1 || degree[v] < degree[next])) next = v;
+                }
+                removed[next] = true;
+                vertices[i] = next;
+                for(int v = 0; v < n; v++){
+                    if(graph[next][v]) degree[v]--;
+                }
+            }
+
+            return byVertexOrder(alphabets, vertices);
+        });
+    }
+
+    public static FoldPlanner byName(String name, long seed){
+        /**
+         * Returns the planner with the given name, as printed by name().
+         */
+
+        switch(name){
+            case "in-order": return inOrder();
+            case "shuffled": return shuffled(seed);
+            case "greedy-overlap": return greedyOverlap();
+            case "degree": return byDegree();
+            case "bfs": return bfs();
+            case "degeneracy": return degeneracy();
+            default: throw new IllegalArgumentException("Unknown fold planner: " + name);
+        }
+    }
+
+    private static int[] byVertexOrder(int[][] alphabets, int[] vertices){
+        /**
+         * Sorts the automata by the position of the last of their vertices in the given vertex order,
+         * then by the position of the first, so every vertex is finished before moving on to the next.
+         */
+
+        int[] position = new int[vertices.length];
+        for(int i = 0; i < vertices.length; i++) position[vertices[i]] = i;
+
+        Integer[] order = new Integer[alphabets.length];
+        long[] sortKey = new long[alphabets.length];
+        for(int i = 0; i < alphabets.length; i++){
+            int first = Integer.MAX_VALUE, last = -1;
+            for(int v : alphabets[i]){
+                first = Math.min(first, position[v]);
+                last = Math.max(last, position[v]);
+            }
+            sortKey[i] = ((long) last << 32) | first;
+            order[i] = i;
+        }
+        Arrays.sort(order, (i1, i2) -> Long.compare(sortKey[i1], sortKey[i2]));
+
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] degrees(boolean[][] graph){
+        int[] degree = new int[graph.length];
+        for(int i = 0; i < graph.length; i++){
+            for(int j = 0; j < graph.length; j++){
+                if(graph[i][j]) degree[i]++;
+            }
+        }
+        return degree;
+    }
+
+    private static int[] identity(int n){
+        int[] order = new int[n];
+        for(int i = 0; i < n; i++) order[i] = i;
+        return order;
+    }
+
+    private static FoldPlanner named(String name, FoldPlanner planner){
+        return new FoldPlanner(){
+            @Override
+            public int[] plan(int[][] alphabets, boolean[][] graph){
+                return planner.plan(alphabets, graph);
+            }
+
+            @Override
+            public String name(){
+                return name;
+            }
+        };
+    }
+}
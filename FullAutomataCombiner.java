@@ -1,21 +1,20 @@
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.IntStream;
 
 
 public class FullAutomataCombiner {
+
+    public static final int NO_TRANSITION = -1;
+
+    //Number of product states worked on by each parallel task
+    public static final int PARALLEL_GRAIN = 4096;
+
     public static void main(String[] args){
 
         //Simple 4-node graph
@@ -54,7 +53,7 @@ public class FullAutomataCombiner {
 
         Long start = System.currentTimeMillis();
         
-        if(checkWordRepresentable(transitionMatrix, true)){
+        if(checkWordRepresentable(transitionMatrix, CombinerOptions.fromArgs(args).verbose(true))){
             System.out.println("This graph IS word representable");
         }
         else{
@@ -69,40 +68,227 @@ public class FullAutomataCombiner {
     }
 
     public static boolean checkWordRepresentable(int[][] transitionMatrix, boolean verbose){
+        return checkWordRepresentable(transitionMatrix, new CombinerOptions().verbose(verbose));
+    }
+
+    public static boolean checkWordRepresentable(int[][] transitionMatrix, CombinerOptions options){
         /*
          * Returns true if the given graph is word-representable, else false.
+         * If the options have a verdict cache, the graph is looked up there first,
+         * and no automaton is written out when it is found.
+         * When the options do not write out the automaton, the graph is reduced first (unless that is turned off too)
+         * and only what is left is combined. The automaton written out is always the one of the whole graph.
          */
 
-        List<Automata> automatas = graphToAutomata(transitionMatrix);
+        //Graphs with fewer than two vertices are always word-representable
+        if(transitionMatrix.length < 2) return true;
 
-        Automata combined = combineAutomatas(automatas.get(0), automatas.get(1));
-        trimAutomata(combined);
-        renameAutomata(combined);
+        boolean[][] graph = new boolean[transitionMatrix.length][transitionMatrix.length];
+        for(int i = 0; i < transitionMatrix.length; i++){
+            for(int j = 0; j < transitionMatrix.length; j++) graph[i][j] = transitionMatrix[i][j] == 1;
+        }
 
-        //hopcroft(combined);
+        if(options.cache != null) return options.cache.check(graph, g -> reduceAndCheck(g, options));
+        return reduceAndCheck(graph, options);
+    }
 
-        if(verbose) System.out.println("Number of combined automatas: 2 - Number of States: " + combined.states.length);
+    private static boolean reduceAndCheck(boolean[][] graph, CombinerOptions options){
+        //Reducing would write out the automaton of the kernel instead of the graph's
+        if(!options.reduceGraph || options.writeAutomata) return combineAndCheck(graph, options, true);
 
-        for(int i = 2; i < automatas.size(); i++){
-            combined = combineAutomatas(combined, automatas.get(i));
-            trimAutomata(combined);
-            renameAutomata(combined);
+        //Every reduction removes vertices, so a kernel as large as the graph is the whole graph
+        return GraphReduction.check(graph, kernel -> combineAndCheck(kernel, options, kernel.length == graph.length), options.verbose);
+    }
 
-            if(combined.acceptingStates.size() == 0){
-                return false;
-            }
-            
-            //hopcroft(combined);
+    private static boolean combineAndCheck(boolean[][] graph, CombinerOptions options, boolean whole){
+        /*
+         * Combines the automata of the graph, or of the kernel left after reducing it.
+         * When verbose and the whole graph was combined, a shortest word representing it is printed,
+         * taken from the automaton that was just built.
+         */
+
+        if(options.portfolio != null) return options.portfolio.check(graph, options.verbose);
+
+        if(options.symbolic) return SymbolicChecker.check(graph, options.verbose);
 
-            if(verbose) System.out.println("Number of combined automatas: " + (i+1) + " - Number of States: " + combined.states.length);
+        if(options.symmetry && graph.length <= SymmetryReduction.MAX_VERTICES){
+            return SymmetryReduction.check(graph, SymmetryReduction.MAX_GROUP_SIZE, options.verbose);
+        }
+
+        int[][] transitionMatrix = new int[graph.length][graph.length];
+        for(int i = 0; i < graph.length; i++){
+            for(int j = 0; j < graph.length; j++) transitionMatrix[i][j] = graph[i][j] ? 1 : 0;
+        }
+
+        List<Automata> automatas = orderAutomatas(graphToAutomata(transitionMatrix), graph, options);
+
+        Checkpoint.Writer checkpoints = Checkpoint.start(options, "full", graph, automatas, a -> a.alphabet, Automata::fromFile);
+
+        Automata combined = reduceAutomatas(automatas, options, checkpoints);
+
+        if(checkpoints != null) checkpoints.finish();
+
+        if(combined.acceptingStates.isEmpty()){
+            return false;
         }
 
         //combined.print();
-        combined.writeToFile();
+        if(options.writeAutomata) combined.writeToFile();
+
+        if(options.verbose && whole){
+            try {
+                System.out.println("Shortest representing word: " + WitnessWord.toString(WitnessWord.shortest(combined)));
+            } catch(IllegalArgumentException | OutOfMemoryError e) {
+                System.out.println("Could not find a representing word: " + e);
+            }
+        }
 
         return true;
     }
 
+    public static int[] representingWord(boolean[][] graph, CombinerOptions options){
+        /**
+         * Returns a shortest word that represents the graph, or null if it is not word-representable.
+         * The whole graph is combined, without reducing it or looking it up in the cache,
+         * as a word for a reduced graph would leave out the vertices that were removed.
+         */
+
+        if(graph.length < 2){
+            int[] word = new int[graph.length];
+            for(int v = 0; v < graph.length; v++) word[v] = v;
+            return word;
+        }
+
+        int[][] transitionMatrix = new int[graph.length][graph.length];
+        for(int i = 0; i < graph.length; i++){
+            for(int j = 0; j < graph.length; j++) transitionMatrix[i][j] = graph[i][j] ? 1 : 0;
+        }
+
+        Automata combined = reduceAutomatas(orderAutomatas(graphToAutomata(transitionMatrix), graph, options), options);
+        return WitnessWord.shortest(combined);
+    }
+
+    public static Automata reduceAutomatas(List<Automata> automatas, CombinerOptions options){
+        return reduceAutomatas(automatas, options, null);
+    }
+
+    public static Automata reduceAutomatas(List<Automata> automatas, CombinerOptions options, Checkpoint.Writer checkpoints){
+        /*
+         * Combines all of the automata into one, either folding them in order or as a balanced tree.
+         * Stops early and returns the partial result if it accepts nothing.
+         * When folding in order, checkpoints (which can be null) is told about every combined automaton.
+         */
+
+        long initialStates = 0;
+        for(Automata a : automatas) initialStates += a.states.length;
+        StepMetrics.Recorder recorder = new StepMetrics.Recorder("full", initialStates, options.listener);
+
+        if(options.treeReduction){
+            return new TreeReduction<Automata>((a1, a2) -> combineStep(a1, a2, options, recorder), a -> a.alphabet, a -> a.states.length,
+                                               a -> a.acceptingStates.isEmpty(), options.pool(), options.memoryBudget, options.verbose).reduce(automatas);
+        }
+
+        if(automatas.size() == 1) return automatas.get(0);
+
+        Automata combined = automatas.get(0);
+
+        for(int i = 1; i < automatas.size(); i++){
+            combined = combineStep(combined, automatas.get(i), options, recorder);
+
+            if(i > 1 && combined.acceptingStates.isEmpty()){
+                return combined;
+            }
+
+            if(options.verbose) System.out.println("Number of combined automatas: " + (i+1) + " - Number of States: " + combined.states.length);
+
+            if(checkpoints != null){
+                checkpoints.stepCompleted(i + 1, combined.alphabet.symbols, combined.states.length, combined.startState, combined.acceptingStates, combined.transitions);
+            }
+        }
+
+        return combined;
+    }
+
+    public static Automata combineStep(Automata a1, Automata a2, CombinerOptions options){
+        return combineStep(a1, a2, options, new StepMetrics.Recorder("full", a1.states.length + a2.states.length, options.listener));
+    }
+
+    public static Automata combineStep(Automata a1, Automata a2, CombinerOptions options, StepMetrics.Recorder recorder){
+        /*
+         * Combines two automata and trims the result, returning it with its states renamed.
+         * The result is also minimised unless minimisation has been turned off, in which case
+         * only its duplicate states are merged (unless that has been turned off as well).
+         * The sizes and timings of the step are passed on to the recorder.
+         * Throws a CancellationException if the thread has been interrupted.
+         */
+
+        //Checks can be cancelled by interrupting the thread running them, which is noticed between steps
+        if(Thread.currentThread().isInterrupted()) throw new CancellationException("Check was interrupted");
+
+        StepMetrics metrics = recorder.start(a1.states.length, a2.states.length);
+
+        long start = System.nanoTime();
+        Automata combined;
+        if(options.reachableProduct){
+            combined = reachableProduct(a1, a2, options.pool());
+        }
+        else{
+            combined = combineAutomatas(a1, a2, options.pool());
+        }
+        metrics.productStates = combined.states.length;
+        metrics.alphabetSize = combined.alphabet.size();
+
+        long trimStart = System.nanoTime();
+        if(options.reachableProduct){
+            removeDeadStates(combined);
+        }
+        else{
+            trimAutomata(combined);
+        }
+
+        long renameStart = System.nanoTime();
+        renameAutomata(combined);
+        metrics.trimmedStates = combined.states.length;
+
+        long hopcroftStart = System.nanoTime();
+        if(options.minimise) hopcroft(combined);
+        else if(options.deduplicate) mergeDuplicates(combined);
+        metrics.minimisedStates = combined.states.length;
+
+        long end = System.nanoTime();
+        metrics.combineNanos = trimStart - start;
+        metrics.trimNanos = renameStart - trimStart;
+        metrics.renameNanos = hopcroftStart - renameStart;
+        metrics.hopcroftNanos = end - hopcroftStart;
+        recorder.finish(metrics);
+
+        return combined;
+    }
+
+    public static List<Automata> orderAutomatas(List<Automata> automatas, boolean[][] graph, CombinerOptions options){
+        /*
+         * Reorders the automata into the order chosen by the fold planner in the options.
+         */
+
+        int[][] alphabets = new int[automatas.size()][];
+        for(int i = 0; i < automatas.size(); i++){
+            alphabets[i] = automatas.get(i).alphabet.symbols();
+        }
+
+        int[] order = options.planner.plan(alphabets, graph);
+
+        List<Automata> ordered = new ArrayList<>(automatas.size());
+        for(int i : order) ordered.add(automatas.get(i));
+
+        if(options.verbose){
+            StringBuilder sb = new StringBuilder("Fold order (" + options.planner.name() + "):");
+            for(Automata a : ordered) sb.append(' ').append(a.alphabet);
+            System.out.println(sb);
+        }
+
+        return ordered;
+    }
+
     public static List<Automata> graphToAutomata(int[][] transitionMatrix){
         /*
          * Converts a given graph represented by the given transition matrix into
@@ -111,34 +297,28 @@ public class FullAutomataCombiner {
 
         List<Automata> automatas = new ArrayList<>();
 
-        char[] nodeNames = new char[transitionMatrix.length];
         for(int i = 0; i < transitionMatrix.length; i++){
-            nodeNames[i] = (char) ('a' + i);
-        }
-
-        for(int i = 0; i < nodeNames.length; i++){
-            for(int j = i+1; j < nodeNames.length; j++){
-                char n1 = nodeNames[i];
-                char n2 = nodeNames[j];
-
-                Set<Character> alphabet = Set.of(n1, n2);
+            for(int j = i+1; j < transitionMatrix.length; j++){
+                Alphabet alphabet = Alphabet.of(i, j);
 
                 int[] states = new int[]{0, 1, 2, 3};
 
                 int startState = 0;
 
-                List<Integer> acceptingStates;
+                BitSet acceptingStates = new BitSet(4);
                 if(transitionMatrix[i][j] == 1){
-                    acceptingStates = List.of(1, 2);
+                    acceptingStates.set(1);
+                    acceptingStates.set(2);
                 }
                 else{
-                    acceptingStates = List.of(3);
+                    acceptingStates.set(3);
                 }
 
-                Map<Integer, Map<Character, Integer>> transitions = Map.of(0, Map.of(n1, 1, n2, 2),
-                                                                           1, Map.of(n1, 3, n2, 2),
-                                                                           2, Map.of(n1, 1, n2, 3),
-                                                                           3, Map.of(n1, 3, n2, 3));
+                //Each row holds the targets for i then j
+                int[] transitions = new int[]{1, 2,
+                                              3, 2,
+                                              1, 3,
+                                              3, 3};
 
                 automatas.add(new Automata(alphabet, states, startState, acceptingStates, transitions));
             }
@@ -148,40 +328,136 @@ public class FullAutomataCombiner {
     }
 
     public static Automata combineAutomatas(Automata a1, Automata a2){
+        return combineAutomatas(a1, a2, null);
+    }
+
+    public static Automata combineAutomatas(Automata a1, Automata a2, ForkJoinPool pool){
         /**
         * Computes the union of two DFAs and returns the combined result
+        * If a pool is given the rows of the product are split between its threads,
+        * each of which fills in its own block of the transition table.
         */
+
+        int n1 = a1.states.length;
+        int n2 = a2.states.length;
         
-        int[] newStates = IntStream.range(0, a1.states.length * a2.states.length).toArray();
+        int[] newStates = IntStream.range(0, n1 * n2).toArray();
 
-        int newStartState = (a1.startState * a2.states.length) + a2.startState;
+        int newStartState = (a1.startState * n2) + a2.startState;
 
-        List<Integer> newAcceptingStates = new ArrayList<>();
-        for(int i = 0; i < a1.acceptingStates.size(); i++){
-            for(int j = 0; j < a2.acceptingStates.size(); j++){
-                newAcceptingStates.add((a1.acceptingStates.get(i) * a2.states.length) + a2.acceptingStates.get(j));
+        BitSet newAcceptingStates = new BitSet(n1 * n2);
+        for(int i = a1.acceptingStates.nextSetBit(0); i != -1; i = a1.acceptingStates.nextSetBit(i + 1)){
+            for(int j = a2.acceptingStates.nextSetBit(0); j != -1; j = a2.acceptingStates.nextSetBit(j + 1)){
+                newAcceptingStates.set((i * n2) + j);
             }
         }
 
-        Set<Character> newAlphabet = new HashSet<>(a1.alphabet);
-        newAlphabet.addAll(a2.alphabet);
+        Alphabet newAlphabet = a1.alphabet.union(a2.alphabet);
+        int k = newAlphabet.size();
+        int k1 = a1.alphabet.size();
+        int k2 = a2.alphabet.size();
+        int[] map1 = newAlphabet.symbolMap(a1.alphabet);
+        int[] map2 = newAlphabet.symbolMap(a2.alphabet);
+
+        int[] newTransitions = new int[n1 * n2 * k];
+
+        ParallelRange.run(pool, 0, n1, Math.max(1, PARALLEL_GRAIN / n2), (from, to) -> {
+            for(int state1 = from; state1 < to; state1++){
+                for(int state2 = 0; state2 < n2; state2++){
+                    int row = ((state1 * n2) + state2) * k;
+                    for(int a = 0; a < k; a++){
+                        int t1 = map1[a] == -1 ? state1 : a1.transitions[state1 * k1 + map1[a]];
+                        int t2 = map2[a] == -1 ? state2 : a2.transitions[state2 * k2 + map2[a]];
+                        newTransitions[row + a] = (t1 == NO_TRANSITION || t2 == NO_TRANSITION) ? NO_TRANSITION : t1 * n2 + t2;
+                    }
+                }
+            }
+        });
+
+        return new Automata(newAlphabet, newStates, newStartState, newAcceptingStates, newTransitions);
+    }
+
+    public static Automata combineReachable(Automata a1, Automata a2){
+        return combineReachable(a1, a2, null);
+    }
+
+    public static Automata combineReachable(Automata a1, Automata a2, ForkJoinPool pool){
+        /**
+         * Computes the union of two DFAs like combineAutomatas, but only builds the states
+         * that can be reached from the start state, then removes the dead states and renames the result.
+         */
+
+        Automata combined = reachableProduct(a1, a2, pool);
+        removeDeadStates(combined);
+        return renameAutomata(combined);
+    }
+
+    public static Automata reachableProduct(Automata a1, Automata a2, ForkJoinPool pool){
+        /**
+         * Builds the states of the union of two DFAs that can be reached from the start state.
+         * States are numbered in the order they are found, so the result is already free of
+         * unreachable states and only the dead states need removing.
+         * The search runs one BFS level at a time. If a pool is given the successors of a level are
+         * worked out in parallel, then numbered in order on the calling thread so the numbering
+         * is the same whatever the parallelism.
+         */
+
+        int n2 = a2.states.length;
+
+        Alphabet newAlphabet = a1.alphabet.union(a2.alphabet);
+        int k = newAlphabet.size();
+        int k1 = a1.alphabet.size();
+        int k2 = a2.alphabet.size();
+        int[] map1 = newAlphabet.symbolMap(a1.alphabet);
+        int[] map2 = newAlphabet.symbolMap(a2.alphabet);
+
+        StateIndex index = new StateIndex(Math.max(a1.states.length, n2));
+        index.getOrAdd(((long) a1.startState * n2) + a2.startState);
+
+        int[] newTransitions = new int[Math.max(a1.states.length, n2) * k];
+        BitSet newAcceptingStates = new BitSet();
+
+        //Every state is given the next id when it is found, so the ids double as the BFS queue
+        int levelStart = 0;
+        while(levelStart < index.size()){
+            int levelEnd = index.size();
+            int offset = levelStart;
+            long[] successors = new long[(levelEnd - levelStart) * k];
+
+            ParallelRange.run(pool, levelStart, levelEnd, Math.max(1, PARALLEL_GRAIN / k), (from, to) -> {
+                for(int current = from; current < to; current++){
+                    long key = index.key(current);
+                    int state1 = (int) (key / n2);
+                    int state2 = (int) (key % n2);
+
+                    for(int a = 0; a < k; a++){
+                        int t1 = map1[a] == -1 ? state1 : a1.transitions[state1 * k1 + map1[a]];
+                        int t2 = map2[a] == -1 ? state2 : a2.transitions[state2 * k2 + map2[a]];
+                        successors[(current - offset) * k + a] = (t1 == NO_TRANSITION || t2 == NO_TRANSITION) ? -1 : ((long) t1 * n2) + t2;
+                    }
+                }
+            });
+
+            if(levelEnd * k > newTransitions.length) newTransitions = Arrays.copyOf(newTransitions, Math.max(newTransitions.length * 2, levelEnd * k));
 
-        Map<Integer, Map<Character, Integer>> newTransitions = new HashMap<>();
+            for(int current = levelStart; current < levelEnd; current++){
+                long key = index.key(current);
+                if(a1.acceptingStates.get((int) (key / n2)) && a2.acceptingStates.get((int) (key % n2))) newAcceptingStates.set(current);
 
-        for(int state1 : a1.states){
-            for(int state2 : a2.states){
-                Map<Character, Integer> transition = new HashMap<>();
-                for(Character a : newAlphabet){
-                    int t1 = a1.transitions.get(state1).getOrDefault(a, state1);
-                    int t2 = a2.transitions.get(state2).getOrDefault(a, state2);
-                    int newT = t1 * a2.states.length + t2;
-                    transition.put(a, newT);
+                for(int a = 0; a < k; a++){
+                    long successor = successors[(current - offset) * k + a];
+                    newTransitions[current * k + a] = successor == -1 ? NO_TRANSITION : index.getOrAdd(successor);
                 }
-                newTransitions.put((state1 * a2.states.length)+state2, transition);
             }
+
+            levelStart = levelEnd;
         }
 
-        return new Automata(newAlphabet, newStates, newStartState, newAcceptingStates, newTransitions);
+        int newNumStates = index.size();
+        int[] newStates = new int[newNumStates];
+        for(int i = 0; i < newNumStates; i++) newStates[i] = i;
+
+        return new Automata(newAlphabet, newStates, 0, newAcceptingStates, Arrays.copyOf(newTransitions, newNumStates * k));
     }
 
     public static Automata trimAutomata(Automata automata){
@@ -191,204 +467,477 @@ public class FullAutomataCombiner {
          * from an automaton.
          */
 
+        int k = automata.alphabet.size();
+        int[] transitions = automata.transitions;
+        int[] next = new int[automata.tableSize()];
+
         //Trim unreachable states
         //Performs a DFA starting from the start state
 
-        Set<Integer> seen = new HashSet<Integer>();
-        seen.add(automata.startState);
-        Queue<Integer> next = new LinkedList<Integer>();
-        next.add(automata.startState);
-
-        while(!next.isEmpty()){
-            Integer current = next.poll();
-            for(int state : automata.transitions.get(current).values()){
-                if(!seen.contains(state)) next.offer(state);
-                seen.add(state);
+        BitSet seen = new BitSet(automata.tableSize());
+        seen.set(automata.startState);
+        next[0] = automata.startState;
+        int head = 0, tail = 1;
+
+        while(head < tail){
+            int current = next[head++];
+            for(int a = 0; a < k; a++){
+                int state = transitions[current * k + a];
+                if(state != NO_TRANSITION && !seen.get(state)){
+                    seen.set(state);
+                    next[tail++] = state;
+                }
             }
         }
 
         //All states that are not found during the DFA are unreachable
-        automata.states = seen.stream().mapToInt(Integer::intValue).toArray();
-        automata.acceptingStates.retainAll(seen);
-        automata.transitions.keySet().retainAll(seen);
+        automata.states = seen.stream().toArray();
+        automata.acceptingStates.and(seen);
+
+        return removeDeadStates(automata);
+    }
+
+    public static Automata removeDeadStates(Automata automata){
+        /**
+         * Removes dead states (states that cannot reach an accepting state) from an automaton,
+         * redirecting every transition into a dead state to the sink state.
+         */
+
+        int k = automata.alphabet.size();
+        int[] transitions = automata.transitions;
+        int[] next = new int[automata.tableSize()];
+        int head = 0, tail = 0;
 
         //Find the sink state
-        Integer sink = null;
-        for (int state : automata.states) {
-            Map<Character, Integer> edges = automata.transitions.get(state);
-            if (edges.values().stream().allMatch(target -> target.equals(state))) {
+        int sink = -1;
+        for(int state : automata.states){
+            boolean selfLoop = true;
+            for(int a = 0; a < k && selfLoop; a++){
+                selfLoop = transitions[state * k + a] == state;
+            }
+            if(selfLoop){
                 sink = state;
                 break;
             }
         }
-        if(sink == null) throw new RuntimeException("Sink not found");
+        if(sink == -1) throw new RuntimeException("Sink not found");
 
         //Trim dead nodes
         //Performs a reverse DFA starting from the accepting states
-        seen.clear();
-        seen.addAll(automata.acceptingStates);
-        next.clear();
-        next.addAll(automata.acceptingStates);
+        BitSet seen = (BitSet) automata.acceptingStates.clone();
+        for(int i = seen.nextSetBit(0); i != -1; i = seen.nextSetBit(i + 1)){
+            next[tail++] = i;
+        }
 
         automata.calcReverse();
 
-        while(!next.isEmpty()){
-            int current = next.poll();
-            for(List<Integer> states : automata.reverseTransitions.get(current).values()){
-                for(int state : states){
-                    if(!seen.contains(state)) next.offer(state);
-                    seen.add(state);
+        while(head < tail){
+            int current = next[head++];
+            int end = automata.reverseIndex[(current + 1) * k];
+            for(int i = automata.reverseIndex[current * k]; i < end; i++){
+                int state = automata.reverseTransitions[i];
+                if(!seen.get(state)){
+                    seen.set(state);
+                    next[tail++] = state;
                 }
             }
         }
 
+        //If the start state is dead then no word is accepted, so the automaton collapses to the sink
+        if(!seen.get(automata.startState)) automata.startState = sink;
+
         //All states that are not found during the DFA (except the sink state) are dead
-        seen.add(sink);
-        automata.states = seen.stream().mapToInt(Integer::intValue).toArray();
-        automata.transitions.keySet().retainAll(seen);
-        final Integer fsink = sink;
-        automata.transitions.forEach((k,v) -> v.replaceAll((k2,v2) -> seen.contains(v2) ? v2 : fsink));
+        seen.set(sink);
+        automata.states = seen.stream().toArray();
+        for(int state : automata.states){
+            for(int a = 0; a < k; a++){
+                int target = transitions[state * k + a];
+                if(target != NO_TRANSITION && !seen.get(target)) transitions[state * k + a] = sink;
+            }
+        }
 
         return automata;
     }
 
-    public static BitSet listToBitSet(List<Integer> list){
-        /**
-         * Converts a list of integers to a bitset where the index of each integer
-         * in the list is set to true
-         */
-        BitSet bs = new BitSet(list.size());
-        for(int s : list){
-            bs.set(s);
-        }
-        return bs;
-    }
-    public static List<Integer> bitSetToList(BitSet bs){
-        /**
-         * Returns a list of integers representing all of the true bits
-         * in a bitset.
-         */
-        List<Integer> list = new ArrayList<>();
-        for (int i = bs.nextSetBit(0); i != -1; i = bs.nextSetBit(i + 1)) {
-            list.add(i);
-        }
-        return list;
-    }
-
     public static Automata hopcroft(Automata automata){
         /**
          * An implementation of Hopcrofts DFA minimisation algorithm. It can
-         * find and merge all equivalent states in an automaton.
-         * Bitsets are used in place of lists of integers so that their
-         * union, difference and intersection methods can be used.
+         * find and merge all equivalent states in an automaton in O(n k log n) time.
+         * The partition is kept in a single array where every block is a contiguous range,
+         * so splitting a block only moves states within its range. Blocks waiting to be used
+         * as splitters are kept in an array backed stack, and the predecessors of each state
+         * are read from the reverse transitions calculated by calcReverse().
          * Pseudocode found from the wikipedia:
          * https://en.wikipedia.org/wiki/DFA_minimization
          */
 
-        automata.calcReverse();
-
-        List<Integer> nonAccepting = Arrays.stream(automata.states).boxed().collect(Collectors.toList());
-        nonAccepting.removeAll(automata.acceptingStates);
+        if(automata.states.length != automata.tableSize()) renameAutomata(automata);
 
-        List<BitSet> p = new ArrayList<>();
-        p.add(listToBitSet(automata.acceptingStates));
-        p.add(listToBitSet(nonAccepting));
+        int n = automata.states.length;
+        int k = automata.alphabet.size();
 
-        List<BitSet> w = new ArrayList<>();
-        w.add(listToBitSet(automata.acceptingStates));
-        w.add(listToBitSet(nonAccepting));
+        automata.calcReverse();
+        int[] reverseIndex = automata.reverseIndex;
+        int[] reverseTransitions = automata.reverseTransitions;
+
+        //elements holds the states grouped by block, location is the position of each state in elements
+        int[] elements = new int[n];
+        int[] location = new int[n];
+        int[] blockOf = new int[n];
+        //Each block b covers elements[first[b]] up to elements[end[b] - 1]
+        //and its first marked[b] elements have been marked by the current splitter
+        int[] first = new int[n];
+        int[] end = new int[n];
+        int[] marked = new int[n];
+        int numBlocks = 0;
+
+        int numAccepting = automata.acceptingStates.cardinality();
+        int nextAccepting = 0;
+        int nextRejecting = numAccepting;
+        for(int s = 0; s < n; s++){
+            int position = automata.acceptingStates.get(s) ? nextAccepting++ : nextRejecting++;
+            elements[position] = s;
+            location[s] = position;
+        }
+        if(numAccepting > 0){
+            first[numBlocks] = 0;
+            end[numBlocks] = numAccepting;
+            numBlocks++;
+        }
+        if(numAccepting < n){
+            first[numBlocks] = numAccepting;
+            end[numBlocks] = n;
+            numBlocks++;
+        }
+        for(int b = 0; b < numBlocks; b++){
+            for(int i = first[b]; i < end[b]; i++) blockOf[elements[i]] = b;
+        }
 
-        while(!w.isEmpty()){
-            List<Integer> a = bitSetToList(w.remove(0));
+        int[] work = new int[n];
+        boolean[] inWork = new boolean[n];
+        int workSize = 0;
+        if(numBlocks == 2){
+            int smaller = (end[0] - first[0]) <= (end[1] - first[1]) ? 0 : 1;
+            work[workSize++] = smaller;
+            inWork[smaller] = true;
+        }
 
-            for(Character c : automata.alphabet){
+        int[] splitter = new int[n];
+        int[] touched = new int[n];
+
+        while(workSize > 0){
+            int block = work[--workSize];
+            inWork[block] = false;
+
+            //The splitter is copied because the block itself may be split while it is being used
+            int splitterSize = end[block] - first[block];
+            System.arraycopy(elements, first[block], splitter, 0, splitterSize);
+
+            for(int c = 0; c < k; c++){
+                int numTouched = 0;
+
+                //Mark every state with a c transition into the splitter
+                for(int i = 0; i < splitterSize; i++){
+                    int s = splitter[i];
+                    int rEnd = reverseIndex[s * k + c + 1];
+                    for(int r = reverseIndex[s * k + c]; r < rEnd; r++){
+                        int p = reverseTransitions[r];
+                        int b = blockOf[p];
+                        int markPosition = first[b] + marked[b];
+                        if(location[p] < markPosition) continue;
+
+                        int other = elements[markPosition];
+                        elements[markPosition] = p;
+                        elements[location[p]] = other;
+                        location[other] = location[p];
+                        location[p] = markPosition;
+
+                        if(marked[b]++ == 0) touched[numTouched++] = b;
+                    }
+                }
 
-                BitSet x = new BitSet();
-                
-                for(int s : a){                    
-                    for(int s2 : automata.reverseTransitions.get(s).get(c)){
-                        x.set(s2);
+                //Split every block that was only partly marked
+                for(int t = 0; t < numTouched; t++){
+                    int b = touched[t];
+                    int markEnd = first[b] + marked[b];
+                    marked[b] = 0;
+                    if(markEnd == end[b]) continue;
+
+                    int newBlock = numBlocks++;
+                    first[newBlock] = first[b];
+                    end[newBlock] = markEnd;
+                    first[b] = markEnd;
+                    for(int i = first[newBlock]; i < end[newBlock]; i++) blockOf[elements[i]] = newBlock;
+
+                    if(inWork[b] || (end[newBlock] - first[newBlock]) <= (end[b] - first[b])){
+                        work[workSize++] = newBlock;
+                        inWork[newBlock] = true;
+                    }
+                    else{
+                        work[workSize++] = b;
+                        inWork[b] = true;
                     }
                 }
+            }
+        }
+
+        //Number the blocks in the order their lowest state appears
+        int[] blockName = new int[numBlocks];
+        Arrays.fill(blockName, -1);
+        int[] representative = new int[numBlocks];
+        int newNumStates = 0;
+        for(int s = 0; s < n; s++){
+            int b = blockOf[s];
+            if(blockName[b] == -1){
+                blockName[b] = newNumStates;
+                representative[newNumStates] = s;
+                newNumStates++;
+            }
+        }
+
+        BitSet newAcceptingStates = new BitSet(newNumStates);
+        int[] newTransitions = new int[newNumStates * k];
+        for(int i = 0; i < newNumStates; i++){
+            int r = representative[i];
+            if(automata.acceptingStates.get(r)) newAcceptingStates.set(i);
+            for(int c = 0; c < k; c++){
+                int t = automata.transitions[r * k + c];
+                newTransitions[i * k + c] = t == NO_TRANSITION ? NO_TRANSITION : blockName[blockOf[t]];
+            }
+        }
 
-                List<BitSet> addToP = new ArrayList<>();
-                List<BitSet> removeFromP = new ArrayList<>();
+        automata.states = IntStream.range(0, newNumStates).toArray();
+        automata.startState = blockName[blockOf[automata.startState]];
+        automata.acceptingStates = newAcceptingStates;
+        automata.transitions = newTransitions;
+        automata.reverseIndex = null;
+        automata.reverseTransitions = null;
+
+        return automata;
+    }
 
-                for(BitSet y : p){
-                    
-                    BitSet inters = (BitSet) y.clone();
-                    inters.and(x);
-                    if(inters.isEmpty()) continue;
+    
+    public static Automata mergeDuplicates(Automata automata){
+        /**
+         * Merges states that are exact duplicates of each other: both accepting or both not, and with the
+         * same target for every symbol. This is much cheaper than hopcroft() and finds most of the same merges,
+         * though it cannot merge equivalent states whose transitions only match once they are merged themselves,
+         * such as two equivalent cycles.
+         *
+         * Every state is hash-consed by its signature (whether it accepts and the class of each of its targets)
+         * in an open addressing table of state ids, and joins the class of the first state with the same signature.
+         * Merging a class changes the signatures of the states with transitions into it, so those states are
+         * taken out of the table and looked up again, until no more states are merged.
+         */
 
-                    BitSet diff = (BitSet) y.clone();
-                    diff.andNot(x);
-                    if(diff.isEmpty()) continue;
+        if(automata.states.length != automata.tableSize()) renameAutomata(automata);
 
-                    removeFromP.add(y);
-                    addToP.add(inters);
-                    addToP.add(diff);
+        int n = automata.states.length;
+        int k = automata.alphabet.size();
+        int[] transitions = automata.transitions;
+        BitSet accepting = automata.acceptingStates;
+        if(n < 2) return automata;
 
-                    if(w.contains(y)){
-                        w.remove(y);
-                        w.add(inters);
-                        w.add(diff);
+        //Predecessors of each state, counted once for every transition
+        int[] predIndex = new int[n + 1];
+        for(int t : transitions){
+            if(t != NO_TRANSITION) predIndex[t + 1]++;
+        }
+        for(int s = 0; s < n; s++) predIndex[s + 1] += predIndex[s];
+        int[] preds = new int[predIndex[n]];
+        int[] fill = Arrays.copyOf(predIndex, n);
+        for(int i = 0; i < transitions.length; i++){
+            if(transitions[i] != NO_TRANSITION) preds[fill[transitions[i]]++] = i / k;
+        }
+
+        //classOf[s] points towards the state that represents the class of s, and the members of a class are chained through nextMember
+        int[] classOf = new int[n];
+        int[] nextMember = new int[n];
+        int[] lastMember = new int[n];
+        for(int s = 0; s < n; s++){
+            classOf[s] = s;
+            nextMember[s] = -1;
+            lastMember[s] = s;
+        }
+
+        //Open addressing table of representatives, with the hash each one was added under
+        int[] table = new int[Integer.highestOneBit(Math.max(4, n) * 2 - 1) << 1];
+        Arrays.fill(table, -1);
+        int mask = table.length - 1;
+        int[] hashOf = new int[n];
+
+        int[] pending = new int[n];
+        for(int s = 0; s < n; s++) pending[s] = s;
+        int pendingSize = n;
+
+        boolean[] queued = new boolean[n];
+        int[] next = new int[n];
+
+        while(pendingSize > 0){
+            int nextSize = 0;
+
+            for(int p = 0; p < pendingSize; p++){
+                int s = pending[p];
+                if(classOf[s] != s) continue;
+
+                int hash = accepting.get(s) ? 1 : 0;
+                for(int a = 0; a < k; a++){
+                    int t = transitions[s * k + a];
+                    hash = hash * 0x9E3779B1 + (t == NO_TRANSITION ? NO_TRANSITION : find(classOf, t));
+                }
+                hash ^= hash >>> 16;
+
+                int slot = hash & mask;
+                int match = -1;
+                while(table[slot] != -1){
+                    int u = table[slot];
+                    if(u != s && hashOf[u] == hash && sameSignature(s, u, k, transitions, accepting, classOf)){
+                        match = u;
+                        break;
                     }
-                    else{
-                        if(inters.size() < diff.size()) w.add(inters);
-                        else w.add(diff);
+                    slot = (slot + 1) & mask;
+                }
+
+                if(match == -1){
+                    table[slot] = s;
+                    hashOf[s] = hash;
+                    continue;
+                }
+
+                //s joins the class of match, so every state with a transition into the class of s has a new signature
+                classOf[s] = match;
+                nextMember[lastMember[match]] = s;
+                lastMember[match] = lastMember[s];
+                for(int m = s; m != -1; m = nextMember[m]){
+                    for(int i = predIndex[m]; i < predIndex[m + 1]; i++){
+                        int q = find(classOf, preds[i]);
+                        if(queued[q]) continue;
+                        queued[q] = true;
+                        next[nextSize++] = q;
                     }
                 }
+            }
 
-                p.removeAll(removeFromP);
-                p.addAll(addToP);
+            //The states that will be looked up again are taken out of the table first
+            for(int p = 0; p < nextSize; p++){
+                int q = next[p];
+                queued[q] = false;
+                if(classOf[q] == q) remove(table, hashOf, q);
             }
-        }
 
-        Map<Integer, Integer> stateMap = new HashMap<>();
-        for(int i = 0; i < p.size(); i++){
-            for(int s : bitSetToList(p.get(i))) stateMap.put(s, i);
+            int[] swap = pending;
+            pending = next;
+            next = swap;
+            pendingSize = nextSize;
         }
 
-        automata.states = IntStream.range(0, p.size()).toArray();
-        automata.startState = stateMap.get(automata.startState);
-        automata.acceptingStates = automata.acceptingStates.stream().map(stateMap::get).toList();
-
-        Map<Integer, Map<Character, Integer>> newTransitions = new HashMap<>();
-        for(int i = 0; i < p.size(); i++){
-            Map<Character, Integer> newT =  new HashMap<>();
-            for(Character c : automata.alphabet){
-                newT.put(c, stateMap.get(automata.transitions.get(bitSetToList(p.get(i)).get(0)).get(c)));
+        //Number the classes in the order of their representatives
+        int[] newName = new int[n];
+        int newNumStates = 0;
+        for(int s = 0; s < n; s++){
+            if(classOf[s] == s) newName[s] = newNumStates++;
+        }
+        if(newNumStates == n) return automata;
+
+        BitSet newAcceptingStates = new BitSet(newNumStates);
+        int[] newTransitions = new int[newNumStates * k];
+        for(int s = 0; s < n; s++){
+            if(classOf[s] != s) continue;
+            int i = newName[s];
+            if(accepting.get(s)) newAcceptingStates.set(i);
+            for(int a = 0; a < k; a++){
+                int t = transitions[s * k + a];
+                newTransitions[i * k + a] = t == NO_TRANSITION ? NO_TRANSITION : newName[find(classOf, t)];
             }
-            newTransitions.put(i, newT);
         }
+
+        automata.states = IntStream.range(0, newNumStates).toArray();
+        automata.startState = newName[find(classOf, automata.startState)];
+        automata.acceptingStates = newAcceptingStates;
         automata.transitions = newTransitions;
+        automata.reverseIndex = null;
+        automata.reverseTransitions = null;
 
         return automata;
     }
 
-    
+    private static int find(int[] classOf, int s){
+        while(classOf[s] != s){
+            classOf[s] = classOf[classOf[s]];
+            s = classOf[s];
+        }
+        return s;
+    }
+
+    private static boolean sameSignature(int s, int u, int k, int[] transitions, BitSet accepting, int[] classOf){
+        if(accepting.get(s) != accepting.get(u)) return false;
+        for(int a = 0; a < k; a++){
+            int t1 = transitions[s * k + a];
+            int t2 = transitions[u * k + a];
+            if(t1 == NO_TRANSITION || t2 == NO_TRANSITION){
+                if(t1 != t2) return false;
+            }
+            else if(find(classOf, t1) != find(classOf, t2)) return false;
+        }
+        return true;
+    }
+
+    private static void remove(int[] table, int[] hashOf, int s){
+        //Removes s from the table, moving back the entries after it that would no longer be found
+        int mask = table.length - 1;
+        int slot = hashOf[s] & mask;
+        while(table[slot] != s){
+            if(table[slot] == -1) return;
+            slot = (slot + 1) & mask;
+        }
+
+        int hole = slot;
+        slot = (slot + 1) & mask;
+        while(table[slot] != -1){
+            int home = hashOf[table[slot]] & mask;
+            //The entry can fill the hole if its home is not between the hole and its slot
+            if(((slot - home) & mask) >= ((slot - hole) & mask)){
+                table[hole] = table[slot];
+                hole = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[hole] = -1;
+    }
 
     public static Automata renameAutomata(Automata automata){
         /*
         * Renames the states of a DFA to be simply numbered from 0 to n (n being the number of states)
         * Also renames the start state, accepting states, and transitions appropriately
         */
-        Map<Integer, Integer> stateMap = new HashMap<>();
-        for(int i = 0; i < automata.states.length; i++){
-            stateMap.put(automata.states[i], i);
+        int k = automata.alphabet.size();
+        int n = automata.states.length;
+
+        int[] stateMap = new int[automata.tableSize()];
+        for(int i = 0; i < n; i++){
+            stateMap[automata.states[i]] = i;
         }
 
-        automata.states = IntStream.range(0, automata.states.length).toArray();
-        automata.startState = stateMap.get(automata.startState);
-        automata.acceptingStates = automata.acceptingStates.stream().map(stateMap::get).toList();
+        BitSet newAcceptingStates = new BitSet(n);
+        for(int s = automata.acceptingStates.nextSetBit(0); s != -1; s = automata.acceptingStates.nextSetBit(s + 1)){
+            newAcceptingStates.set(stateMap[s]);
+        }
 
-        Map<Integer, Map<Character, Integer>> newTransitions = new HashMap<>();
-        automata.transitions.forEach((state,transition) -> {
-            Map<Character, Integer> newT2 = new HashMap<>();
-            transition.forEach((key, state2) -> newT2.put(key, stateMap.get(state2)));
-            newTransitions.put(stateMap.get(state), newT2);
-        });
+        int[] newTransitions = new int[n * k];
+        for(int i = 0; i < n; i++){
+            int row = automata.states[i] * k;
+            for(int a = 0; a < k; a++){
+                int t = automata.transitions[row + a];
+                newTransitions[i * k + a] = t == NO_TRANSITION ? NO_TRANSITION : stateMap[t];
+            }
+        }
+
+        automata.startState = stateMap[automata.startState];
+        automata.states = IntStream.range(0, n).toArray();
+        automata.acceptingStates = newAcceptingStates;
         automata.transitions = newTransitions;
+        automata.reverseIndex = null;
+        automata.reverseTransitions = null;
 
         return automata;
     }
@@ -396,45 +945,66 @@ public class FullAutomataCombiner {
 
     public static class Automata {
 
-        Set<Character> alphabet;
+        Alphabet alphabet;
         int[] states;
         int startState;
-        List<Integer> acceptingStates;
-        Map<Integer, Map<Character, Integer>> transitions;
-        Map<Integer, Map<Character, List<Integer>>> reverseTransitions;
-
-        public Automata(Set<Character> alphabet, int[] states, int startState, List<Integer> acceptingStates, Map<Integer, Map<Character, Integer>> transitions, Map<Integer, Map<Character, List<Integer>>> reverseTransitions){
+        BitSet acceptingStates;
+        //transitions[state * alphabet.size() + symbol] holds the target state or NO_TRANSITION
+        int[] transitions;
+        //The states with a transition into (state, symbol) are stored in reverseTransitions
+        //from reverseIndex[state * alphabet.size() + symbol] up to the next index
+        int[] reverseIndex;
+        int[] reverseTransitions;
+
+        public Automata(Alphabet alphabet, int[] states, int startState, BitSet acceptingStates, int[] transitions, int[] reverseIndex, int[] reverseTransitions){
             this.alphabet = alphabet;
             this.states = states;
             this.startState = startState;
             this.acceptingStates = acceptingStates;
             this.transitions = transitions;
+            this.reverseIndex = reverseIndex;
             this.reverseTransitions = reverseTransitions;
         }
 
-        public Automata(Set<Character> alphabet, int[] states, int startState, List<Integer> acceptingStates, Map<Integer, Map<Character, Integer>> transitions){
-            this(alphabet, states, startState, acceptingStates, transitions, null);
+        public Automata(Alphabet alphabet, int[] states, int startState, BitSet acceptingStates, int[] transitions){
+            this(alphabet, states, startState, acceptingStates, transitions, null, null);
+        }
+
+        public int tableSize(){
+            /**
+             * Returns the number of rows in the transition table. This can be larger than
+             * the number of states while trimmed states have not been renamed away.
+             */
+
+            return transitions.length / alphabet.size();
         }
 
         public void calcReverse(){
             /**
              * Calculates the reverse of the transition matrix and saves it in the 
-             * reverseTransitions variable.
+             * reverseIndex and reverseTransitions variables.
              * This function must be called before data from reverseTransitions is accessed.
              */
 
-            reverseTransitions = new HashMap<>();
+            int k = alphabet.size();
+            reverseIndex = new int[transitions.length + 1];
 
             for(int s : states){
-                Map<Character, List<Integer>> temp = new HashMap<>();
-                for(Character c : alphabet){
-                    temp.put(c, new ArrayList<>());
+                for(int a = 0; a < k; a++){
+                    int t = transitions[s * k + a];
+                    if(t != NO_TRANSITION) reverseIndex[t * k + a + 1]++;
                 }
-                reverseTransitions.put(s, temp);
             }
-            for(Map.Entry<Integer, Map<Character, Integer>> entry : transitions.entrySet()){
-                for(Map.Entry<Character, Integer> entry2 : entry.getValue().entrySet()){
-                    reverseTransitions.get(entry2.getValue()).get(entry2.getKey()).add(entry.getKey());
+            for(int i = 0; i < transitions.length; i++){
+                reverseIndex[i + 1] += reverseIndex[i];
+            }
+
+            reverseTransitions = new int[reverseIndex[transitions.length]];
+            int[] fill = Arrays.copyOf(reverseIndex, transitions.length);
+            for(int s : states){
+                for(int a = 0; a < k; a++){
+                    int t = transitions[s * k + a];
+                    if(t != NO_TRANSITION) reverseTransitions[fill[t * k + a]++] = s;
                 }
             }
         }
@@ -446,6 +1016,8 @@ public class FullAutomataCombiner {
              * https://ivanzuzak.info/noam/webapps/fsm_simulator/
              */
 
+            int k = alphabet.size();
+
             System.out.println("#states");
             for(int state : states){
                 System.out.println(state);
@@ -455,94 +1027,72 @@ public class FullAutomataCombiner {
             System.out.println(startState);
 
             System.out.println("#accepting");
-            for(int state : acceptingStates){
+            for(int state = acceptingStates.nextSetBit(0); state != -1; state = acceptingStates.nextSetBit(state + 1)){
                 System.out.println(state);
             }
 
             System.out.println("#alphabet");
-            for(Character a : alphabet){
-                System.out.println(a);
+            for(int a : alphabet.symbols){
+                System.out.println(Alphabet.name(a));
             }
 
             System.out.println("#transitions");
-            for(Map.Entry<Integer, Map<Character, Integer>> e1 : transitions.entrySet()){
-                for(Map.Entry<Character, Integer> e2 : e1.getValue().entrySet()){
-                    System.out.println(e1.getKey() + ":" + e2.getKey() + ">" + e2.getValue());
+            for(int state : states){
+                for(int a = 0; a < k; a++){
+                    int t = transitions[state * k + a];
+                    if(t != NO_TRANSITION) System.out.println(state + ":" + Alphabet.name(alphabet.symbol(a)) + ">" + t);
                 }
             }
         }
 
         public void writeToFile(){
+            writeToFile("automata.bin");
+        }
+
+        public void writeToFile(String fileName){
             /**
-             * Performs the same as the print() function except it saves the output to a file
-             * titled "automata.txt" rather than printing to the console.
-             * https://ivanzuzak.info/noam/webapps/fsm_simulator/
+             * Saves the automaton in the binary format of AutomataFile, which the visualiser can read.
+             * It can be converted to the text format of print() with: java AutomataFile automata.bin automata.txt
              */
 
-            try {
-                BufferedWriter writer = new BufferedWriter(new FileWriter("automata.txt"));
-            
-                writer.write("#states");
-                writer.newLine();
-                for(int state : states){
-                    writer.write(Integer.toString(state));
-                    writer.newLine();
-                }
-
-                writer.write("#initial");
-                writer.newLine();
-                writer.write(Integer.toString(startState));
-                writer.newLine();
-
-                writer.write("#accepting");
-                writer.newLine();
-                for(int state : acceptingStates){
-                    writer.write(Integer.toString(state));
-                    writer.newLine();
-                }
-
-                writer.write("#alphabet");
-                writer.newLine();
-                for(Character a : alphabet){
-                    writer.write(a);
-                    writer.newLine();
-                }
-
-                writer.write("#transitions");
-                for(Map.Entry<Integer, Map<Character, Integer>> e1 : transitions.entrySet()){
-                    for(Map.Entry<Character, Integer> e2 : e1.getValue().entrySet()){
-                        writer.newLine();
-                        writer.write(e1.getKey() + ":" + e2.getKey() + ">" + e2.getValue());
-                    }
-                }
+            Automata automata = states.length == tableSize() ? this : renameAutomata(clone());
 
-                writer.close();
+            try {
+                AutomataFile.write(fileName, automata.alphabet.symbols, automata.states.length, automata.startState,
+                                   automata.acceptingStates, automata.transitions);
                 System.out.println("File write successfull");
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
 
+        public static Automata readFromFile(String fileName) throws IOException {
+            /**
+             * Loads an automaton saved by writeToFile.
+             */
+
+            return fromFile(AutomataFile.read(fileName));
+        }
+
+        public static Automata fromFile(AutomataFile file){
+            int[] states = new int[file.numStates()];
+            for(int i = 0; i < states.length; i++) states[i] = i;
+
+            //The transitions are copied onto the heap, as this combiner renames and trims its tables in place
+            return new Automata(Alphabet.of(file.alphabet), states, file.startState(), file.acceptingStates(), file.transitions());
+        }
+
         public Automata clone(){
             /**
              * Returns a copy of the current automata.
              */
 
-            Set<Character> calphabet = new HashSet<Character>(alphabet);
             int[] cstates = Arrays.copyOf(states, states.length);
             int cstartState = startState;
-            List<Integer> cacceptingStates = new ArrayList<>(acceptingStates);
-
-            Map<Integer, Map<Character, Integer>> ctransitions = new HashMap<>();
-            for(Map.Entry<Integer, Map<Character, Integer>> m1 : transitions.entrySet()){
-                Map<Character, Integer> temp = new HashMap<>();
-                for(Map.Entry<Character, Integer> m2 : m1.getValue().entrySet()){
-                    temp.put(m2.getKey(), m2.getValue());
-                }
-                ctransitions.put(m1.getKey(), temp);
-            }
+            BitSet cacceptingStates = (BitSet) acceptingStates.clone();
+            int[] ctransitions = Arrays.copyOf(transitions, transitions.length);
 
-            return new Automata(calphabet, cstates, cstartState, cacceptingStates, ctransitions);
+            return new Automata(alphabet, cstates, cstartState, cacceptingStates, ctransitions);
         }
     }
 }
@@ -0,0 +1,102 @@
+public class Graph6 {
+    /*
+     * Reads and writes graphs in the graph6 format used by nauty and most graph generators:
+     * https://users.cecs.anu.edu.au/~bdm/data/formats.txt
+     * Graphs are given as adjacency matrices.
+     */
+
+    public static boolean[][] decode(String line){
+        /**
+         * Decodes a single graph6 string into an adjacency matrix.
+         */
+
+        String s = line.strip();
+        if(s.startsWith(">>graph6<<")) s = s.substring(10);
+        if(s.isEmpty()) throw new IllegalArgumentException("Empty graph6 string");
+
+        int position;
+        long n;
+        if(s.charAt(0) != 126){
+            n = s.charAt(0) - 63;
+            position = 1;
+        }
+        else if(s.length() > 1 && s.charAt(1) != 126){
+            n = bits(s, 1, 3);
+            position = 4;
+        }
+        else{
+            n = bits(s, 2, 6);
+            position = 8;
+        }
+        if(n < 0 || n > Integer.MAX_VALUE) throw new IllegalArgumentException("Invalid graph6 string: " + line);
+
+        //Checked before allocating, so that a short string cannot ask for a matrix of millions of vertices
+        long expected = position + (n * (n - 1) / 2 + 5) / 6;
+        if(s.length() < expected) throw new IllegalArgumentException("graph6 string is too short: " + line);
+
+        int size = (int) n;
+        boolean[][] graph = new boolean[size][size];
+
+        int bit = 0;
+        for(int j = 1; j < size; j++){
+            for(int i = 0; i < j; i++){
+                int index = position + bit / 6;
+                if(index >= s.length()) throw new IllegalArgumentException("graph6 string is too short: " + line);
+                int value = s.charAt(index) - 63;
+                if(value < 0 || value > 63) throw new IllegalArgumentException("Invalid graph6 character in: " + line);
+                if(((value >> (5 - (bit % 6))) & 1) == 1){
+                    graph[i][j] = true;
+                    graph[j][i] = true;
+                }
+                bit++;
+            }
+        }
+
+        return graph;
+    }
+
+    public static String encode(boolean[][] graph){
+        /**
+         * Encodes an adjacency matrix as a graph6 string.
+         */
+
+        int n = graph.length;
+        StringBuilder sb = new StringBuilder();
+        if(n < 63){
+            sb.append((char) (n + 63));
+        }
+        else if(n < 258048){
+            sb.append((char) 126);
+            for(int shift = 12; shift >= 0; shift -= 6) sb.append((char) (((n >> shift) & 63) + 63));
+        }
+        else{
+            sb.append((char) 126).append((char) 126);
+            for(int shift = 30; shift >= 0; shift -= 6) sb.append((char) (((n >> shift) & 63) + 63));
+        }
+
+        int value = 0;
+        int bit = 0;
+        for(int j = 1; j < n; j++){
+            for(int i = 0; i < j; i++){
+                value = (value << 1) | (graph[i][j] ? 1 : 0);
+                if(++bit == 6){
+                    sb.append((char) (value + 63));
+                    value = 0;
+                    bit = 0;
+                }
+            }
+        }
+        if(bit > 0) sb.append((char) ((value << (6 - bit)) + 63));
+
+        return sb.toString();
+    }
+
+    private static long bits(String s, int start, int count){
+        long value = 0;
+        for(int i = start; i < start + count; i++){
+            if(i >= s.length()) return -1;
+            value = (value << 6) | (s.charAt(i) - 63);
+        }
+        return value;
+    }
+}
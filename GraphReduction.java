@@ -0,0 +1,190 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+
+public class GraphReduction {
+    /*
+     * Shrinks a graph before it is turned into automata, since every vertex adds a letter to the alphabet
+     * and a state to the product. Each reduction is one that is known not to change whether the graph
+     * is word-representable:
+     *
+     *  - Every graph with at most 5 vertices is word-representable, the smallest one that is not is the wheel W5.
+     *  - A graph is word-representable exactly when all of its connected components are.
+     *    Isolated vertices are components of their own.
+     *  - If two vertices are twins (they have the same neighbours, apart from each other) then one of them can be removed.
+     *    Putting it back replaces the other vertex by a module that is a clique or an independent set, and replacing
+     *    a vertex of a word-representable graph by a module that is a comparability graph keeps it word-representable.
+     *  - A graph with a vertex adjacent to every other vertex is word-representable exactly when the rest of the graph
+     *    is a comparability graph, which is checked directly without building any automata.
+     *
+     * Whatever is left of the graph (a kernel) is passed to the combiner, and the graph is word-representable
+     * when every kernel is.
+     */
+
+    public static final int ALWAYS_REPRESENTABLE = 5;
+
+    public static boolean check(boolean[][] graph, Predicate<boolean[][]> checker, boolean verbose){
+        /**
+         * Reduces the graph and checks the kernels that are left with the checker.
+         */
+
+        graph = removeTwins(graph);
+        if(graph.length <= ALWAYS_REPRESENTABLE) return true;
+
+        List<int[]> components = components(graph);
+        if(components.size() > 1){
+            for(int[] component : components){
+                if(!check(induced(graph, component), checker, verbose)) return false;
+            }
+            return true;
+        }
+
+        int universal = universalVertex(graph);
+        if(universal != -1){
+            int[] rest = new int[graph.length - 1];
+            for(int v = 0, i = 0; v < graph.length; v++){
+                if(v != universal) rest[i++] = v;
+            }
+            return isComparability(induced(graph, rest));
+        }
+
+        if(verbose) System.out.println("Reduced kernel: " + graph.length + " vertices");
+        return checker.test(graph);
+    }
+
+    public static boolean[][] removeTwins(boolean[][] graph){
+        /**
+         * Removes one vertex of every pair of twins, until no two vertices are twins.
+         */
+
+        while(true){
+            int twin = -1;
+            for(int u = 0; u < graph.length && twin == -1; u++){
+                for(int v = u + 1; v < graph.length && twin == -1; v++){
+                    if(twins(graph, u, v)) twin = v;
+                }
+            }
+            if(twin == -1) return graph;
+
+            int[] rest = new int[graph.length - 1];
+            for(int v = 0, i = 0; v < graph.length; v++){
+                if(v != twin) rest[i++] = v;
+            }
+            graph = induced(graph, rest);
+        }
+    }
+
+    static boolean twins(boolean[][] graph, int u, int v){
+        for(int w = 0; w < graph.length; w++){
+            if(w != u && w != v && graph[u][w] != graph[v][w]) return false;
+        }
+        return true;
+    }
+
+    public static List<int[]> components(boolean[][] graph){
+        /**
+         * Returns the vertices of each connected component.
+         */
+
+        int n = graph.length;
+        boolean[] seen = new boolean[n];
+        List<int[]> components = new ArrayList<>();
+        IntQueue queue = new IntQueue(n);
+
+        for(int s = 0; s < n; s++){
+            if(seen[s]) continue;
+
+            seen[s] = true;
+            queue.add(s);
+            List<Integer> component = new ArrayList<>();
+            while(!queue.isEmpty()){
+                int v = queue.poll();
+                component.add(v);
+                for(int u = 0; u < n; u++){
+                    if(graph[v][u] && !seen[u]){
+                        seen[u] = true;
+                        queue.add(u);
+                    }
+                }
+            }
+
+            int[] vertices = new int[component.size()];
+            for(int i = 0; i < vertices.length; i++) vertices[i] = component.get(i);
+            Arrays.sort(vertices);
+            components.add(vertices);
+        }
+
+        return components;
+    }
+
+    public static int universalVertex(boolean[][] graph){
+        /**
+         * Returns a vertex adjacent to every other vertex, or -1 if there is none.
+         */
+
+        for(int v = 0; v < graph.length; v++){
+            int degree = 0;
+            for(int u = 0; u < graph.length; u++){
+                if(graph[v][u]) degree++;
+            }
+            if(degree == graph.length - 1) return v;
+        }
+        return -1;
+    }
+
+    public static boolean isComparability(boolean[][] graph){
+        /**
+         * Returns true if the edges of the graph can be directed so that they form a partial order.
+         *
+         * Directing an edge ab as a->b forces a->c for every other neighbour c of a that is not adjacent to b,
+         * and forces c->b for every other neighbour c of b that is not adjacent to a. The directed edges that
+         * force each other form implication classes, and the graph is a comparability graph exactly when
+         * no implication class holds both directions of the same edge (Golumbic).
+         */
+
+        int n = graph.length;
+        int[] parent = new int[n * n];
+        for(int i = 0; i < parent.length; i++) parent[i] = i;
+
+        for(int a = 0; a < n; a++){
+            for(int b = 0; b < n; b++){
+                if(!graph[a][b]) continue;
+
+                for(int c = 0; c < n; c++){
+                    if(c == a || c == b) continue;
+                    if(graph[a][c] && !graph[b][c]) union(parent, a * n + b, a * n + c);
+                    if(graph[c][b] && !graph[a][c]) union(parent, a * n + b, c * n + b);
+                }
+            }
+        }
+
+        for(int a = 0; a < n; a++){
+            for(int b = a + 1; b < n; b++){
+                if(graph[a][b] && find(parent, a * n + b) == find(parent, b * n + a)) return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean[][] induced(boolean[][] graph, int[] vertices){
+        boolean[][] induced = new boolean[vertices.length][vertices.length];
+        for(int i = 0; i < vertices.length; i++){
+            for(int j = 0; j < vertices.length; j++) induced[i][j] = graph[vertices[i]][vertices[j]];
+        }
+        return induced;
+    }
+
+    private static void union(int[] parent, int x, int y){
+        parent[find(parent, x)] = find(parent, y);
+    }
+
+    private static int find(int[] parent, int x){
+        while(parent[x] != x){
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+}
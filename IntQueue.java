@@ -0,0 +1,53 @@
+public class IntQueue {
+    /*
+     * A first in first out queue of ints backed by a circular array that doubles
+     * in size when it fills up, so it never boxes its elements.
+     */
+
+    int[] elements;
+    int head;
+    int size;
+
+    public IntQueue(int initialCapacity){
+        elements = new int[Math.max(4, initialCapacity)];
+    }
+
+    public void add(int e){
+        if(size == elements.length){
+            int[] grown = new int[elements.length * 2];
+            int firstPart = elements.length - head;
+            System.arraycopy(elements, head, grown, 0, firstPart);
+            System.arraycopy(elements, 0, grown, firstPart, head);
+            elements = grown;
+            head = 0;
+        }
+        elements[(head + size) % elements.length] = e;
+        size++;
+    }
+
+    public int poll(){
+        int e = elements[head];
+        head = (head + 1) % elements.length;
+        size--;
+        return e;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public void clear(){
+        head = 0;
+        size = 0;
+    }
+
+    public int[] toArray(){
+        int[] a = new int[size];
+        for(int i = 0; i < size; i++) a[i] = elements[(head + i) % elements.length];
+        return a;
+    }
+}
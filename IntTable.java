@@ -0,0 +1,182 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class IntTable implements AutoCloseable {
+    /*
+     * A flat table of ints, such as the transition table of an automaton, stored either in an int array
+     * on the heap or off the heap in direct buffers.
+     *
+     * Off heap tables do not count towards the heap, so the garbage collector never has to scan or move them,
+     * and a table can hold more than the 2^31 ints of an array. They are split into pages of PAGE_SIZE ints,
+     * since one buffer can hold at most 2GB, and the memory of every page is given back as soon as the table
+     * is closed rather than when the buffers are collected.
+     *
+     * Tables are reference counted: a table starts with one reference, retain() adds one and close() removes one,
+     * and the pages are freed when the last reference is closed. Reading a table after that crashes the JVM,
+     * so anything that reads a table on another thread has to retain it first.
+     * Closing a heap table does nothing, the array is collected as usual, and neither does closing a view
+     * of pages that belong to something else, such as the mapped transitions of an AutomataFile.
+     */
+
+    static final int PAGE_BITS = 24;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    final long length;
+    final int[] heap;
+    final ByteBuffer[] buffers;
+    final IntBuffer[] pages;
+    final AtomicInteger references = new AtomicInteger(1);
+
+    IntTable(long length, int[] heap, ByteBuffer[] buffers){
+        this.length = length;
+        this.heap = heap;
+        this.buffers = buffers;
+        if(buffers == null) this.pages = null;
+        else{
+            this.pages = new IntBuffer[buffers.length];
+            for(int p = 0; p < buffers.length; p++) pages[p] = buffers[p].asIntBuffer();
+        }
+    }
+
+    IntTable(long length, IntBuffer[] pages){
+        //A view of pages owned by someone else, such as a mapped file, which closing the table leaves alone
+        this.length = length;
+        this.heap = null;
+        this.buffers = null;
+        this.pages = pages;
+    }
+
+    public static IntTable of(int[] table){
+        return new IntTable(table.length, table, null);
+    }
+
+    public static IntTable allocate(long length, boolean offHeap){
+        /**
+         * Returns a table of the given length filled with zeros.
+         */
+
+        if(!offHeap){
+            if(length > Integer.MAX_VALUE) throw new RuntimeException("Table of " + length + " ints is too large for the heap");
+            return new IntTable(length, new int[(int) length], null);
+        }
+
+        ByteBuffer[] buffers = new ByteBuffer[(int) ((length + PAGE_SIZE - 1) >>> PAGE_BITS)];
+        for(int p = 0; p < buffers.length; p++){
+            int size = (int) Math.min(PAGE_SIZE, length - ((long) p << PAGE_BITS));
+            buffers[p] = ByteBuffer.allocateDirect(4 * size).order(ByteOrder.nativeOrder());
+        }
+        return new IntTable(length, null, buffers);
+    }
+
+    public static IntTable allocateLike(IntTable table, long length){
+        return allocate(length, table.isOffHeap());
+    }
+
+    public boolean isOffHeap(){
+        return heap == null;
+    }
+
+    public long length(){
+        return length;
+    }
+
+    public int get(long index){
+        if(heap != null) return heap[(int) index];
+        return pages[(int) (index >>> PAGE_BITS)].get((int) (index & (PAGE_SIZE - 1)));
+    }
+
+    public void set(long index, int value){
+        if(heap != null) heap[(int) index] = value;
+        else pages[(int) (index >>> PAGE_BITS)].put((int) (index & (PAGE_SIZE - 1)), value);
+    }
+
+    public void fill(int value){
+        for(long i = 0; i < length; i++) set(i, value);
+    }
+
+    public void copyTo(long from, IntBuffer target, int count){
+        /**
+         * Copies count ints starting at from into the target buffer, advancing its position.
+         */
+
+        if(heap != null){
+            target.put(heap, (int) from, count);
+            return;
+        }
+        while(count > 0){
+            int page = (int) (from >>> PAGE_BITS);
+            int offset = (int) (from & (PAGE_SIZE - 1));
+            int n = Math.min(count, pages[page].limit() - offset);
+            target.put(pages[page].duplicate().position(offset).limit(offset + n));
+            from += n;
+            count -= n;
+        }
+    }
+
+    public IntTable copy(){
+        IntTable copy = allocateLike(this, length);
+        if(heap != null) System.arraycopy(heap, 0, copy.heap, 0, heap.length);
+        else{
+            for(int p = 0; p < pages.length; p++) copy.pages[p].put(0, pages[p], 0, pages[p].limit());
+        }
+        return copy;
+    }
+
+    public int[] toArray(){
+        /**
+         * Returns the table as an array, the same array for a heap table and a copy for an off heap one.
+         */
+
+        if(heap != null) return heap;
+        if(length > Integer.MAX_VALUE) throw new RuntimeException("Table of " + length + " ints is too large for the heap");
+        int[] array = new int[(int) length];
+        copyTo(0, IntBuffer.wrap(array), array.length);
+        return array;
+    }
+
+    public IntTable retain(){
+        if(references.getAndIncrement() <= 0) throw new IllegalStateException("Table has already been freed");
+        return this;
+    }
+
+    @Override
+    public void close(){
+        if(references.decrementAndGet() != 0 || buffers == null) return;
+        for(ByteBuffer buffer : buffers) free(buffer);
+    }
+
+    //Unsafe.invokeCleaner frees a direct buffer straight away, if it cannot be found the buffers are left for the garbage collector
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private static void free(ByteBuffer buffer){
+        if(INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            e.printStackTrace();
+        }
+    }
+}
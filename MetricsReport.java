@@ -0,0 +1,65 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class MetricsReport implements StepMetrics.Listener {
+    /*
+     * Collects the metrics of every combine step so they can be written out as a CSV or JSON report.
+     *
+     *     MetricsReport report = new MetricsReport();
+     *     QuickAutomataCombiner.checkWordRepresentable(graph, new CombinerOptions().listener(report));
+     *     report.write("metrics.csv");
+     */
+
+    final List<StepMetrics> steps = new ArrayList<>();
+
+    @Override
+    public synchronized void stepCompleted(StepMetrics metrics){
+        steps.add(metrics);
+    }
+
+    public synchronized List<StepMetrics> steps(){
+        return new ArrayList<>(steps);
+    }
+
+    public synchronized StepMetrics largestStep(){
+        /**
+         * Returns the step with the largest product before trimming, or null if there were no steps.
+         */
+
+        StepMetrics largest = null;
+        for(StepMetrics m : steps){
+            if(largest == null || m.productStates > largest.productStates) largest = m;
+        }
+        return largest;
+    }
+
+    public void write(String fileName) throws IOException {
+        /**
+         * Writes the report as JSON if the file name ends in .json, and as CSV otherwise.
+         */
+
+        if(fileName.endsWith(".json")) writeJson(fileName);
+        else writeCsv(fileName);
+    }
+
+    public synchronized void writeCsv(String fileName) throws IOException {
+        try(PrintWriter writer = new PrintWriter(new FileWriter(fileName))){
+            writer.println(StepMetrics.csvHeader());
+            for(StepMetrics m : steps) writer.println(m.toCsv());
+        }
+    }
+
+    public synchronized void writeJson(String fileName) throws IOException {
+        try(PrintWriter writer = new PrintWriter(new FileWriter(fileName))){
+            writer.println("[");
+            for(int i = 0; i < steps.size(); i++){
+                writer.println("  " + steps.get(i).toJson() + (i + 1 < steps.size() ? "," : ""));
+            }
+            writer.println("]");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+public class ParallelRange extends RecursiveAction {
+    /*
+     * Runs a body over the integer range [from, to) on a fork/join pool, splitting the range
+     * into pieces of the grain size. Each piece is handed to the body as its own partition, so bodies
+     * that only write to the parts of an array that belong to their partition need no locking, and
+     * their results are the same whatever the parallelism. Pieces start at multiples of the grain
+     * from the start of the range, so (from - start) / grain numbers the partitions.
+     */
+
+    private static final long serialVersionUID = 1L;
+
+    public interface Body {
+        void run(int from, int to);
+    }
+
+    final int from;
+    final int to;
+    final int grain;
+    final Body body;
+
+    ParallelRange(int from, int to, int grain, Body body){
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+        this.body = body;
+    }
+
+    public static void run(ForkJoinPool pool, int from, int to, int grain, Body body){
+        /**
+         * Runs the body over [from, to), in parallel if a pool is given and the range is larger than the grain.
+         */
+
+        if(pool == null || to - from <= grain){
+            if(from < to) body.run(from, to);
+            return;
+        }
+        pool.invoke(new ParallelRange(from, to, grain, body));
+    }
+
+    public static int partitions(ForkJoinPool pool, int size, int grain){
+        /**
+         * Returns how many grain sized partitions a range of the given size is split into.
+         */
+
+        if(pool == null || size <= grain) return 1;
+        return (size + grain - 1) / grain;
+    }
+
+    @Override
+    protected void compute(){
+        if(to - from <= grain){
+            body.run(from, to);
+            return;
+        }
+        int pieces = (to - from + grain - 1) / grain;
+        int mid = from + (pieces / 2) * grain;
+        invokeAll(new ParallelRange(from, mid, grain, body), new ParallelRange(mid, to, grain, body));
+    }
+}
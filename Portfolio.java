@@ -0,0 +1,136 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class Portfolio {
+    /*
+     * Checks a graph with several differently configured combiners at once and takes the first verdict.
+     * How long a check takes can change by orders of magnitude with the order the automata are folded in,
+     * and which order (or combiner) is fastest differs from graph to graph, so racing a few of them
+     * means one unlucky order no longer decides how long the check takes.
+     *
+     * Every entry runs on a thread of a shared executor. As soon as one of them returns a verdict the others
+     * are cancelled by interrupting their threads, which the combiners notice at the start of their next combine step,
+     * so the automata they were building can be collected straight away. An entry that fails is ignored
+     * as long as another one gives a verdict.
+     *
+     * The graph given to check() is combined as it is, so entries do not reduce it, look it up in a cache
+     * or write out automata; that is left to the checkWordRepresentable() it was called from.
+     * Entries are all added before the first check, after which the portfolio can be shared between threads.
+     */
+
+    final List<String> names = new ArrayList<>();
+    final List<Boolean> full = new ArrayList<>();
+    final List<CombinerOptions> options = new ArrayList<>();
+    final ExecutorService executor;
+
+    //Number of verdicts each entry has been first with
+    final List<AtomicLong> wins = new ArrayList<>();
+
+    public Portfolio(ExecutorService executor){
+        this.executor = executor;
+    }
+
+    public Portfolio(){
+        this(Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "portfolio");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    public static Portfolio standard(){
+        /**
+         * QuickAutomataCombiner with the greedy fold order and with a shuffled order, against FullAutomataCombiner
+         * with the greedy fold order.
+         */
+
+        return new Portfolio().add("quick-greedy", false, FoldPlanner.greedyOverlap())
+                              .add("quick-shuffled", false, FoldPlanner.shuffled(4011))
+                              .add("full-greedy", true, FoldPlanner.greedyOverlap());
+    }
+
+    public Portfolio add(String name, boolean full, FoldPlanner planner){
+        return add(name, full, new CombinerOptions().planner(planner));
+    }
+
+    public Portfolio add(String name, boolean full, CombinerOptions options){
+        /**
+         * Adds an entry checking with FullAutomataCombiner if full is set, or else QuickAutomataCombiner,
+         * under the given options. Each entry builds its products on its own thread, and its graph reduction,
+         * cache and automaton output are turned off.
+         */
+
+        names.add(name);
+        this.full.add(full);
+        this.options.add(options.threads(1).reduceGraph(false).cache(null).writeAutomata(false).portfolio(null));
+        wins.add(new AtomicLong());
+        return this;
+    }
+
+    public boolean check(boolean[][] graph, boolean verbose){
+        /**
+         * Returns the first verdict given by any of the entries, cancelling the rest.
+         * Throws the failure of the first entry if every entry fails.
+         */
+
+        int entries = names.size();
+        if(entries == 0) throw new IllegalStateException("The portfolio has no entries");
+
+        long start = System.currentTimeMillis();
+        ExecutorCompletionService<Integer> race = new ExecutorCompletionService<>(executor);
+        List<Future<Integer>> running = new ArrayList<>();
+        boolean[] verdicts = new boolean[entries];
+
+        try {
+            for(int e = 0; e < entries; e++){
+                int entry = e;
+                running.add(race.submit(() -> {
+                    verdicts[entry] = BatchChecker.check(graph, full.get(entry), options.get(entry));
+                    return entry;
+                }));
+            }
+
+            Throwable failure = null;
+            for(int finished = 0; finished < entries; finished++){
+                try {
+                    int winner = race.take().get();
+                    wins.get(winner).incrementAndGet();
+                    if(verbose) System.out.println("Portfolio verdict from " + names.get(winner) + " after " + (System.currentTimeMillis() - start) + "ms");
+                    return verdicts[winner];
+                } catch(ExecutionException e) {
+                    if(failure == null) failure = e.getCause();
+                }
+            }
+            throw new RuntimeException("Every entry of the portfolio failed", failure);
+        } catch(InterruptedException e) {
+            //The check itself is being cancelled, the same as the combiners are
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Check was interrupted");
+        } finally {
+            for(Future<Integer> entry : running) entry.cancel(true);
+        }
+    }
+
+    public void shutdown(){
+        /**
+         * Stops the executor, cancelling any entries still running.
+         */
+
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder sb = new StringBuilder("Portfolio wins:");
+        for(int e = 0; e < names.size(); e++) sb.append(" ").append(names.get(e)).append("=").append(wins.get(e));
+        return sb.toString();
+    }
+}
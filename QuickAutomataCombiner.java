@@ -1,20 +1,20 @@
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
-import java.util.stream.IntStream;
-import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
 
 
 public class QuickAutomataCombiner {
+
+    public static final int NO_TRANSITION = -1;
+    public static final int EXTERNAL_TRANSITION = -2;
+
+    //Number of product states worked on by each parallel task
+    public static final int PARALLEL_GRAIN = 4096;
+
     public static void main(String[] args){
 
         //Non-word-representable 6-node graph (Wheel graph)
@@ -55,7 +55,7 @@ public class QuickAutomataCombiner {
         
         Long start = System.currentTimeMillis();
 
-        if(checkWordRepresentable(transitionMatrix, true)){
+        if(checkWordRepresentable(transitionMatrix, CombinerOptions.fromArgs(args).verbose(true))){
             System.out.println("This graph IS word representable");
         }
         else{
@@ -70,79 +70,234 @@ public class QuickAutomataCombiner {
     }
 
     public static boolean checkWordRepresentable(boolean[][] transitionMatrix, boolean verbose){
+        return checkWordRepresentable(transitionMatrix, new CombinerOptions().verbose(verbose));
+    }
+
+    public static boolean checkWordRepresentable(boolean[][] transitionMatrix, CombinerOptions options){
         /*
          * Returns true if the given graph is word-representable, else false.
+         * If the options have a verdict cache, the graph is looked up there first.
+         * Unless turned off in the options, the graph is reduced first and only what is left is combined.
          */
 
-        char[] nodeNames = new char[transitionMatrix.length];
+        //Graphs with fewer than two vertices are always word-representable
+        if(transitionMatrix.length < 2) return true;
 
-        for(int i = 0; i < transitionMatrix.length; i++){
-            nodeNames[i] = (char) ('a' + i);
-        }
+        if(options.cache != null) return options.cache.check(transitionMatrix, graph -> reduceAndCheck(graph, options));
+        return reduceAndCheck(transitionMatrix, options);
+    }
+
+    private static boolean reduceAndCheck(boolean[][] transitionMatrix, CombinerOptions options){
+        if(!options.reduceGraph) return combineAndCheck(transitionMatrix, options);
+        return GraphReduction.check(transitionMatrix, kernel -> combineAndCheck(kernel, options), options.verbose);
+    }
+
+    private static boolean combineAndCheck(boolean[][] transitionMatrix, CombinerOptions options){
+        if(options.portfolio != null) return options.portfolio.check(transitionMatrix, options.verbose);
+
+        //The symbolic engine searches FullAutomataCombiner's product, which gives the same verdict
+        if(options.symbolic) return SymbolicChecker.check(transitionMatrix, options.verbose);
+
+        List<Automata> automatas = orderAutomatas(graphToAutomata(transitionMatrix), transitionMatrix, options);
+
+        Checkpoint.Writer checkpoints = Checkpoint.start(options, "quick", transitionMatrix, automatas, a -> a.alphabet, Automata::fromFile);
 
-        List<Automata> automatas = graphToAutomata(nodeNames, transitionMatrix);
+        Automata combined = reduceAutomatas(automatas, options, options.earlyRejection ? transitionMatrix : null, checkpoints);
 
-        Collections.shuffle(automatas);
+        if(checkpoints != null) checkpoints.finish();
 
-        Automata combined = combineAutomatas(automatas.get(0), automatas.get(1));
-        combined = trimAutomata(combined);
+        try {
+            //Every component was found to break a constraint before the end
+            if(combined.numStates == 0) return false;
 
-        if(verbose) System.out.println("Number of combined automatas: 2 - Number of States: " + combined.numStates);
+            //The components are checked in place, so none of them has to be turned into its own automata
+            StronglyConnected components = StronglyConnected.of(combined.numStates, combined.alphabet.size(), combined.transitions);
+            Constraints constraints = new Constraints(transitionMatrix);
 
-        for(int i = 2; i < automatas.size(); i++){
-            combined = combineAutomatas(combined, automatas.get(i));
-            combined = trimAutomata(combined);
+            for(int[] states : components.members()){
+                if(constraints.check(combined, states)){
+                    return true;
+                }
+            }
+
+            return false;
+        } finally {
+            combined.free();
+        }
+    }
+
+    public static Automata reduceAutomatas(List<Automata> automatas, CombinerOptions options){
+        return reduceAutomatas(automatas, options, null);
+    }
 
-            if(verbose) System.out.println("Number of combined automatas: " + (i+1) + " - Number of States: " + combined.numStates);
+    public static Automata reduceAutomatas(List<Automata> automatas, CombinerOptions options, boolean[][] transitionMatrix){
+        return reduceAutomatas(automatas, options, transitionMatrix, null);
+    }
+
+    public static Automata reduceAutomatas(List<Automata> automatas, CombinerOptions options, boolean[][] transitionMatrix, Checkpoint.Writer checkpoints){
+        /*
+         * Combines all of the automata into one, either folding them in order or as a balanced tree.
+         * If the transition matrix is given, components that can no longer satisfy its constraints
+         * are dropped after every step, and the partial result is returned as soon as none are left.
+         * When folding in order, checkpoints (which can be null) is told about every combined automaton.
+         * Every intermediate automaton is freed as soon as the next one has been built from it,
+         * but the given automata are left for the caller.
+         */
+
+        long initialStates = 0;
+        for(Automata a : automatas) initialStates += a.numStates;
+        StepMetrics.Recorder recorder = new StepMetrics.Recorder("quick", initialStates, options.listener);
+
+        if(options.treeReduction){
+            List<Automata> inputs = new ArrayList<>(automatas);
+            TreeReduction.Combiner<Automata> combiner = (a1, a2) -> {
+                Automata combined = combineStep(a1, a2, options, transitionMatrix, recorder);
+                if(!inputs.contains(a1)) a1.free();
+                if(!inputs.contains(a2)) a2.free();
+                return combined;
+            };
+            return new TreeReduction<Automata>(combiner, a -> a.alphabet, a -> a.numStates, a -> a.numStates == 0,
+                                               a -> { if(!inputs.contains(a)) a.free(); },
+                                               options.pool(), options.memoryBudget, options.verbose).reduce(automatas);
         }
 
-        List<Automata> groups = findGroups(combined);
+        if(automatas.size() == 1) return automatas.get(0);
+
+        Automata combined = automatas.get(0);
+
+        for(int i = 1; i < automatas.size(); i++){
+            if(combined.numStates == 0){
+                return combined;
+            }
+
+            Automata previous = combined;
+            combined = combineStep(combined, automatas.get(i), options, transitionMatrix, recorder);
+            if(i > 1) previous.free();
 
-        for(Automata a : groups){
-            if(checkConstraints(a, nodeNames, transitionMatrix)){
-                return true;
+            if(options.verbose) System.out.println("Number of combined automatas: " + (i+1) + " - Number of States: " + combined.numStates);
+
+            if(checkpoints != null){
+                checkpoints.stepCompleted(i + 1, combined.alphabet.symbols, combined.numStates, 0, null, combined.transitions);
             }
         }
 
-        return false;
+        return combined;
+    }
+
+    public static Automata combineStep(Automata a1, Automata a2, CombinerOptions options){
+        return combineStep(a1, a2, options, null, new StepMetrics.Recorder("quick", a1.numStates + a2.numStates, options.listener));
+    }
+
+    public static Automata combineStep(Automata a1, Automata a2, CombinerOptions options, boolean[][] transitionMatrix, StepMetrics.Recorder recorder){
+        /*
+         * Combines two automata and trims the result.
+         * If the transition matrix is given, the components that can no longer satisfy its constraints
+         * are dropped as part of the trim.
+         * The sizes and timings of the step are passed on to the recorder.
+         * A product whose exploration would need more memory than the exploration budget is explored on disk.
+         * The product is built off the heap if the options ask for it, and the automata
+         * the step goes through before the result are freed as soon as they have been used.
+         * Throws a CancellationException if the thread has been interrupted.
+         */
+
+        //Checks can be cancelled by interrupting the thread running them, which is noticed between steps
+        if(Thread.currentThread().isInterrupted()) throw new CancellationException("Check was interrupted");
+
+        StepMetrics metrics = recorder.start(a1.numStates, a2.numStates);
+        metrics.productStates = (long) a1.numStates * a2.numStates;
+
+        long start = System.nanoTime();
+        Automata combined;
+        if(explorationBytes(a1, a2) > options.explorationBudget){
+            if(options.verbose) System.out.println("Exploring the product of " + a1.numStates + " and " + a2.numStates + " states on disk");
+            combined = combineExternal(a1, a2, options.offHeap, options.spillDirectory, options.explorationBudget);
+            metrics.combineNanos = System.nanoTime() - start;
+        }
+        else if(options.reachableProduct){
+            combined = combineReachable(a1, a2, options.pool(), options.offHeap);
+            metrics.combineNanos = System.nanoTime() - start;
+        }
+        else{
+            Automata product = combineAutomatas(a1, a2, options.pool(), options.offHeap);
+            long trimStart = System.nanoTime();
+            combined = trimAutomata(product);
+            product.free();
+            metrics.combineNanos = trimStart - start;
+            metrics.trimNanos = System.nanoTime() - trimStart;
+        }
+
+        if(transitionMatrix != null){
+            long pruneStart = System.nanoTime();
+            Automata pruned = pruneComponents(combined, transitionMatrix);
+            if(pruned != combined) combined.free();
+            combined = pruned;
+            metrics.trimNanos += System.nanoTime() - pruneStart;
+        }
+
+        metrics.alphabetSize = combined.alphabet.size();
+        metrics.trimmedStates = combined.numStates;
+        metrics.minimisedStates = combined.numStates;
+        recorder.finish(metrics);
+
+        return combined;
+    }
+
+    public static List<Automata> orderAutomatas(List<Automata> automatas, boolean[][] graph, CombinerOptions options){
+        /*
+         * Reorders the automata into the order chosen by the fold planner in the options.
+         */
+
+        int[][] alphabets = new int[automatas.size()][];
+        for(int i = 0; i < automatas.size(); i++){
+            alphabets[i] = automatas.get(i).alphabet.symbols();
+        }
+
+        int[] order = options.planner.plan(alphabets, graph);
+
+        List<Automata> ordered = new ArrayList<>(automatas.size());
+        for(int i : order) ordered.add(automatas.get(i));
+
+        if(options.verbose){
+            StringBuilder sb = new StringBuilder("Fold order (" + options.planner.name() + "):");
+            for(Automata a : ordered) sb.append(' ').append(a.alphabet);
+            System.out.println(sb);
+        }
+
+        return ordered;
     }
 
-    public static List<Automata> graphToAutomata(char[] node_names, boolean[][] transitionMatrix){
+    public static List<Automata> graphToAutomata(boolean[][] transitionMatrix){
         /*
-         * Converts a given graph represented by the transition matrix and a list of names of the nodes into
+         * Converts a given graph represented by the transition matrix into
          * a list of DFAs to recognise the edges in the graph.
          */
 
         List<Automata> automatas = new ArrayList<>();
 
-        for(int i = 0; i < node_names.length; i++){
-            for(int j = i+1; j < node_names.length; j++){
+        for(int i = 0; i < transitionMatrix.length; i++){
+            for(int j = i+1; j < transitionMatrix.length; j++){
                 if(!transitionMatrix[i][j]) continue;
 
-                char n1 = node_names[i];
-                char n2 = node_names[j];
-
-                Set<Character> alphabet = Set.of(n1, n2);
+                Alphabet alphabet = Alphabet.of(i, j);
 
                 int numStates = 2;
 
-                Map<Integer, Map<Character, Integer>> transitions = Map.of(0, Map.of(n1, 1),
-                                                                           1, Map.of(n2, 0));
+                //Each row holds the targets for i then j
+                int[] transitions = new int[]{1, NO_TRANSITION,
+                                              NO_TRANSITION, 0};
                 
                 automatas.add(new Automata(alphabet, numStates, transitions));
             }
         }
 
-        for(int i = 0; i < node_names.length; i++){
+        for(int i = 0; i < transitionMatrix.length; i++){
             if(!allFalse(transitionMatrix[i])) continue;
 
-            char n1 = node_names[i];
-
-            Set<Character> alphabet = Set.of(n1);
+            Alphabet alphabet = Alphabet.of(i);
 
             int numStates = 1;
 
-            Map<Integer, Map<Character, Integer>> transitions = Map.of(0, Map.of(n1, 0));
+            int[] transitions = new int[]{0};
 
             automatas.add(new Automata(alphabet, numStates, transitions));
         }
@@ -158,146 +313,434 @@ public class QuickAutomataCombiner {
     }
 
     public static Automata combineAutomatas(Automata a1, Automata a2){
+        return combineAutomatas(a1, a2, null);
+    }
+
+    public static Automata combineAutomatas(Automata a1, Automata a2, ForkJoinPool pool){
+        return combineAutomatas(a1, a2, pool, false);
+    }
+
+    public static Automata combineAutomatas(Automata a1, Automata a2, ForkJoinPool pool, boolean offHeap){
         /**
         * Computes the union of two DFAs and returnes the combined result
+        * If a pool is given the rows of the product are split between its threads,
+        * each of which fills in its own block of the transition table.
+        * If offHeap is set the transition table of the result is stored off the heap.
         */
         
         int newNumStates = a1.numStates * a2.numStates;
-
-        Set<Character> newAlphabet = new HashSet<>(a1.alphabet);
-        newAlphabet.addAll(a2.alphabet);
-
-        Map<Integer, Map<Character, Integer>> newTransitions = new HashMap<>(newNumStates);
-
-        for(int state1 = 0; state1 < a1.numStates; state1++){
-            for(int state2 = 0; state2 < a2.numStates; state2++){
-                Map<Character, Integer> transition = new HashMap<>();
-                for(Character a : newAlphabet){
-                    if((a1.alphabet.contains(a) && !a1.transitions.get(state1).containsKey(a)) 
-                    || (a2.alphabet.contains(a) && !a2.transitions.get(state2).containsKey(a))) continue;
-                    int t1 = a1.transitions.get(state1).getOrDefault(a, state1);
-                    int t2 = a2.transitions.get(state2).getOrDefault(a, state2);
-                    int newT = t1 * a2.numStates + t2;
-                    transition.put(a, newT);
+        int n2 = a2.numStates;
+
+        Alphabet newAlphabet = a1.alphabet.union(a2.alphabet);
+        int k = newAlphabet.size();
+        int k1 = a1.alphabet.size();
+        int k2 = a2.alphabet.size();
+        int[] map1 = newAlphabet.symbolMap(a1.alphabet);
+        int[] map2 = newAlphabet.symbolMap(a2.alphabet);
+
+        IntTable newTransitions = IntTable.allocate((long) newNumStates * k, offHeap);
+
+        ParallelRange.run(pool, 0, a1.numStates, Math.max(1, PARALLEL_GRAIN / n2), (from, to) -> {
+            for(int state1 = from; state1 < to; state1++){
+                for(int state2 = 0; state2 < n2; state2++){
+                    long row = ((long) state1 * n2 + state2) * k;
+                    for(int a = 0; a < k; a++){
+                        int t1 = map1[a] == -1 ? state1 : a1.transitions.get((long) state1 * k1 + map1[a]);
+                        int t2 = map2[a] == -1 ? state2 : a2.transitions.get((long) state2 * k2 + map2[a]);
+                        newTransitions.set(row + a, (t1 < 0 || t2 < 0) ? NO_TRANSITION : t1 * n2 + t2);
+                    }
                 }
-                newTransitions.put((state1 * a2.numStates)+state2, transition);
             }
-        }
+        });
 
         return new Automata(newAlphabet, newNumStates, newTransitions);
     }
 
-    public static Automata trimAutomata(Automata automata){
+    public static Automata combineReachable(Automata a1, Automata a2){
+        return combineReachable(a1, a2, null);
+    }
+
+    public static Automata combineReachable(Automata a1, Automata a2, ForkJoinPool pool){
+        return combineReachable(a1, a2, pool, false);
+    }
+
+    public static Automata combineReachable(Automata a1, Automata a2, ForkJoinPool pool, boolean offHeap){
         /**
-         * Removes any states with no incoming transitions and all subsequent states
-         */
+        * Computes the union of two DFAs and trims it in a single pass, giving the same result as
+        * trimAutomata(combineAutomatas(a1, a2)) without building the whole product.
+        * Only the states reachable from the source states of the product are explored, which takes
+        * one bit per product state, and the remaining states are numbered by counting the explored
+        * states that come before them.
+        * If a pool is given, finding the source states and building the remaining states are split
+        * between its threads. Each partition collects its sources in its own block, which are merged
+        * in partition order, and writes the rows of its own states, so the result does not depend
+        * on the parallelism.
+        * If offHeap is set the transition table of the result is stored off the heap.
+        */
 
-        Set<Integer> seen = new HashSet<>(automata.sourceNodes());
-        Queue<Integer> next = new LinkedList<>();
-        next.addAll(seen);
+        long productSize = (long) a1.numStates * a2.numStates;
+        if(productSize > Integer.MAX_VALUE) throw new RuntimeException("Product of " + a1.numStates + " and " + a2.numStates + " states is too large");
+        int n2 = a2.numStates;
+
+        Alphabet newAlphabet = a1.alphabet.union(a2.alphabet);
+        int k = newAlphabet.size();
+        int k1 = a1.alphabet.size();
+        int k2 = a2.alphabet.size();
+        int[] map1 = newAlphabet.symbolMap(a1.alphabet);
+        int[] map2 = newAlphabet.symbolMap(a2.alphabet);
+
+        BitSet incoming1 = a1.incomingSymbols();
+        BitSet incoming2 = a2.incomingSymbols();
+
+        //A product state has an in-transition on a symbol if every automaton with that symbol in its alphabet does
+        int rowGrain = Math.max(1, PARALLEL_GRAIN / n2);
+        int[][] sourceBlocks = new int[ParallelRange.partitions(pool, a1.numStates, rowGrain)][];
+        ParallelRange.run(pool, 0, a1.numStates, rowGrain, (from, to) -> {
+            IntQueue sources = new IntQueue(16);
+            for(int state1 = from; state1 < to; state1++){
+                for(int state2 = 0; state2 < n2; state2++){
+                    boolean source = true;
+                    for(int a = 0; a < k && source; a++){
+                        source = !((map1[a] == -1 || incoming1.get(state1 * k1 + map1[a]))
+                                && (map2[a] == -1 || incoming2.get(state2 * k2 + map2[a])));
+                    }
+                    if(source) sources.add((state1 * n2) + state2);
+                }
+            }
+            sourceBlocks[from / rowGrain] = sources.toArray();
+        });
+
+        long[] reached = new long[(int) ((productSize + 63) >>> 6)];
+        IntQueue next = new IntQueue(a1.numStates + n2);
+        for(int[] block : sourceBlocks){
+            if(block == null) continue;
+            for(int s : block){
+                reached[s >>> 6] |= 1L << s;
+                next.add(s);
+            }
+        }
 
+        //Mark every state reachable from a source state
         while(!next.isEmpty()){
             int current = next.poll();
-            for(int s : automata.transitions.get(current).values()){
-                if(seen.add(s)){
-                    next.add(s);
+            int state1 = current / n2;
+            int state2 = current % n2;
+            for(int a = 0; a < k; a++){
+                int t1 = map1[a] == -1 ? state1 : a1.transitions.get((long) state1 * k1 + map1[a]);
+                int t2 = map2[a] == -1 ? state2 : a2.transitions.get((long) state2 * k2 + map2[a]);
+                if(t1 < 0 || t2 < 0) continue;
+                int t = (t1 * n2) + t2;
+                if((reached[t >>> 6] & (1L << t)) == 0){
+                    reached[t >>> 6] |= 1L << t;
+                    next.add(t);
                 }
             }
         }
 
-        List<Integer> states = new ArrayList<>(IntStream.range(0, automata.numStates).boxed().toList());
-
-        states.removeAll(seen);
+        //reachedBefore[w] counts the reached states in the words before w
+        int[] reachedBefore = new int[reached.length + 1];
+        for(int w = 0; w < reached.length; w++){
+            reachedBefore[w + 1] = reachedBefore[w] + Long.bitCount(reached[w]);
+        }
+        int newNumStates = (int) (productSize - reachedBefore[reached.length]);
+
+        //Partitions are whole words of the reached bits, so each one knows where its first new state goes
+        IntTable newTransitions = IntTable.allocate((long) newNumStates * k, offHeap);
+        ParallelRange.run(pool, 0, reached.length, Math.max(1, PARALLEL_GRAIN / 64), (fromWord, toWord) -> {
+            int newState = (fromWord << 6) - reachedBefore[fromWord];
+            int end = (int) Math.min(productSize, (long) toWord << 6);
+            for(int s = fromWord << 6; s < end; s++){
+                if((reached[s >>> 6] & (1L << s)) != 0) continue;
+
+                int state1 = s / n2;
+                int state2 = s % n2;
+                for(int a = 0; a < k; a++){
+                    int t1 = map1[a] == -1 ? state1 : a1.transitions.get((long) state1 * k1 + map1[a]);
+                    int t2 = map2[a] == -1 ? state2 : a2.transitions.get((long) state2 * k2 + map2[a]);
+                    int target = NO_TRANSITION;
+                    if(t1 >= 0 && t2 >= 0){
+                        int t = (t1 * n2) + t2;
+                        long bit = 1L << t;
+                        if((reached[t >>> 6] & bit) != 0) target = EXTERNAL_TRANSITION;
+                        else target = t - reachedBefore[t >>> 6] - Long.bitCount(reached[t >>> 6] & (bit - 1));
+                    }
+                    newTransitions.set((long) newState * k + a, target);
+                }
+                newState++;
+            }
+        });
 
-        return extractAutomata(automata, states);
+        return new Automata(newAlphabet, newNumStates, newTransitions);
     }
 
-    public static List<Automata> findGroups(Automata automata) {
+    public static long explorationBytes(Automata a1, Automata a2){
         /**
-         * Decomposes a given automata into its strongly connected components.
-         * Each component is turned into its own automata and they are all returned as a list.
+         * Estimates the most memory combineReachable could need to explore the product of the two automata,
+         * besides the result: one bit per product state to mark it, counts of the marked bits and
+         * up to an int per product state in the queue of states to visit.
          */
 
-        List<Automata> groups = new ArrayList<>();
-
-        Set<Integer> seen = new HashSet<>();
+        long productSize = (long) a1.numStates * a2.numStates;
+        return productSize / 8 + productSize / 16 + 4 * productSize;
+    }
 
-        for(int s = 0; s < automata.numStates; s++){
-            if(seen.contains(s)) continue;
+    public static Automata combineExternal(Automata a1, Automata a2, boolean offHeap, String directory, long memoryBytes){
+        /**
+        * Gives the same result as combineReachable, but explores the product with an ExternalExploration
+        * in the given directory, so only about memoryBytes are used besides the two automata and the result.
+        *
+        * The source states are found in order and written out as a run, and the states reachable from them
+        * (the ones that are removed) are found with a breadth first search on disk. The states that are kept
+        * are then read off in order by merging against that run. Numbering the target of a transition needs
+        * the number of removed states before it, so every transition is written out as a pair of its target
+        * and its place in the new table, the pairs are sorted by target, and the targets are numbered with
+        * one more merge against the removed states.
+        */
 
-            seen.add(s);
-            List<Integer> states = new ArrayList<>();
-            states.add(s);
+        long productSize = (long) a1.numStates * a2.numStates;
+        if(productSize > Integer.MAX_VALUE) throw new RuntimeException("Product of " + a1.numStates + " and " + a2.numStates + " states is too large");
+        int n2 = a2.numStates;
+
+        Alphabet newAlphabet = a1.alphabet.union(a2.alphabet);
+        int k = newAlphabet.size();
+        int k1 = a1.alphabet.size();
+        int k2 = a2.alphabet.size();
+        int[] map1 = newAlphabet.symbolMap(a1.alphabet);
+        int[] map2 = newAlphabet.symbolMap(a2.alphabet);
+
+        BitSet incoming1 = a1.incomingSymbols();
+        BitSet incoming2 = a2.incomingSymbols();
+
+        try(ExternalExploration exploration = new ExternalExploration(directory, memoryBytes)){
+            ExternalExploration.RunWriter sources = exploration.writer();
+            for(int state1 = 0; state1 < a1.numStates; state1++){
+                for(int state2 = 0; state2 < n2; state2++){
+                    boolean source = true;
+                    for(int a = 0; a < k && source; a++){
+                        source = !((map1[a] == -1 || incoming1.get(state1 * k1 + map1[a]))
+                                && (map2[a] == -1 || incoming2.get(state2 * k2 + map2[a])));
+                    }
+                    if(source) sources.add((long) state1 * n2 + state2);
+                }
+            }
 
-            Queue<Integer> queue = new LinkedList<>();
-            queue.add(s);
+            ExternalExploration.Run reached = exploration.reachable(sources.finish(), (current, out) -> {
+                int state1 = (int) (current / n2);
+                int state2 = (int) (current % n2);
+                for(int a = 0; a < k; a++){
+                    int t1 = map1[a] == -1 ? state1 : a1.transitions.get((long) state1 * k1 + map1[a]);
+                    int t2 = map2[a] == -1 ? state2 : a2.transitions.get((long) state2 * k2 + map2[a]);
+                    if(t1 >= 0 && t2 >= 0) out.accept((long) t1 * n2 + t2);
+                }
+            });
+
+            int newNumStates = (int) (productSize - reached.size());
+            IntTable newTransitions = IntTable.allocate((long) newNumStates * k, offHeap);
+
+            //Each pair holds the target in the top 31 bits and the place in the new table in the low 33 bits
+            long slots = (long) newNumStates * k;
+            if(slots >= 1L << 33) throw new RuntimeException("Product of " + newNumStates + " states is too large to explore on disk");
+            ExternalExploration.Sorter pairs = exploration.sorter(false);
+
+            try(ExternalExploration.RunReader removed = reached.reader()){
+                int newState = 0;
+                for(int s = 0; s < productSize; s++){
+                    if(removed.hasNext() && removed.peek() == s){
+                        removed.next();
+                        continue;
+                    }
 
-            while(!queue.isEmpty()){
-                int current = queue.poll();
+                    int state1 = s / n2;
+                    int state2 = s % n2;
+                    for(int a = 0; a < k; a++){
+                        int t1 = map1[a] == -1 ? state1 : a1.transitions.get((long) state1 * k1 + map1[a]);
+                        int t2 = map2[a] == -1 ? state2 : a2.transitions.get((long) state2 * k2 + map2[a]);
+                        long slot = (long) newState * k + a;
+                        if(t1 < 0 || t2 < 0) newTransitions.set(slot, NO_TRANSITION);
+                        else pairs.add(((long) (t1 * n2 + t2) << 33) | slot);
+                    }
+                    newState++;
+                }
+            }
 
-                for(Integer next : automata.transitions.get(current).values()){
-                    if(!seen.contains(next)){
-                        seen.add(next);
-                        queue.add(next);
-                        states.add(next);
+            ExternalExploration.Run sorted = pairs.finish();
+            try(ExternalExploration.RunReader targets = sorted.reader(); ExternalExploration.RunReader removed = reached.reader()){
+                long removedBefore = 0;
+                while(targets.hasNext()){
+                    long pair = targets.next();
+                    long t = pair >>> 33;
+                    while(removed.hasNext() && removed.peek() < t){
+                        removed.next();
+                        removedBefore++;
                     }
+                    boolean external = removed.hasNext() && removed.peek() == t;
+                    newTransitions.set(pair & ((1L << 33) - 1), external ? EXTERNAL_TRANSITION : (int) (t - removedBefore));
                 }
             }
 
-            groups.add(extractAutomata(automata, states));
+            return new Automata(newAlphabet, newNumStates, newTransitions);
         }
-
-        return groups;
     }
 
-    public static boolean checkConstraints(Automata automata, char[] node_names, boolean[][] transitionMatrix){
+    public static Automata trimAutomata(Automata automata){
         /**
-         * Determines whether the given automata follows all of the constraints outlined by the original
-         * transition matrix.
+         * Removes any states with no incoming transitions and all subsequent states
          */
 
-        Set<Set<Character>> tMatrixConstraints = new HashSet<>();
-        for(int i = 0; i < transitionMatrix.length; i++){
-            for(int j = i+1; j < transitionMatrix.length; j++){
-                if(!transitionMatrix[i][j]) tMatrixConstraints.add(Set.of(node_names[i], node_names[j]));
+        int k = automata.alphabet.size();
+
+        BitSet seen = new BitSet(automata.numStates);
+        int[] next = new int[automata.numStates];
+        int head = 0, tail = 0;
+        for(int s : automata.sourceNodes()){
+            seen.set(s);
+            next[tail++] = s;
+        }
+
+        while(head < tail){
+            int current = next[head++];
+            for(int a = 0; a < k; a++){
+                int s = automata.transitions.get((long) current * k + a);
+                if(s >= 0 && !seen.get(s)){
+                    seen.set(s);
+                    next[tail++] = s;
+                }
             }
         }
 
-        Set<Set<Character>> automataConstraints = new HashSet<>();
-        for(Map.Entry<Integer, Map<Character, Integer>> entry : automata.transitions.entrySet()){
-            List<Character> chars = new ArrayList<>();
-            chars.addAll(entry.getValue().keySet());
-            if(chars.size() < 2) continue;
+        int[] states = new int[automata.numStates - seen.cardinality()];
+        int n = 0;
+        for(int s = seen.nextClearBit(0); s < automata.numStates; s = seen.nextClearBit(s + 1)){
+            states[n++] = s;
+        }
+
+        return extractAutomata(automata, states);
+    }
+
+    public static Automata pruneComponents(Automata automata, boolean[][] transitionMatrix){
+        /**
+         * Removes the weakly connected components of a partly combined automaton that can no longer
+         * lead to a group that passes checkConstraints, and returns what is left.
+         *
+         * Every state of the final automaton is built from a state of this one, and the states of a group
+         * are built from the states of a single component. A symbol can only be available at a final state
+         * if it is available at the state it was built from, so if two vertices in the alphabet are not
+         * joined by an edge, some state of the component has to have both of their symbols available.
+         * A component where no state does can be dropped, along with everything that would be built from it.
+         * Pairs of symbols joined by an edge never need checking, since their automaton alternates them
+         * and so they are never both available.
+         * Components have no transitions between them, so the states that are kept are still
+         * numbered in the same order and the rest of the fold is unchanged for them.
+         */
+
+        int k = automata.alphabet.size();
+        int n = automata.numStates;
 
-            for(int i = 0; i < chars.size(); i++){
-                for(int j = i+1; j < chars.size(); j++){
-                    automataConstraints.add(Set.of(chars.get(i), chars.get(j)));
+        //The pairs of symbols in the alphabet whose vertices are not joined by an edge
+        IntQueue pairs = new IntQueue(16);
+        for(int a = 0; a < k; a++){
+            for(int b = a+1; b < k; b++){
+                if(!transitionMatrix[automata.alphabet.symbol(a)][automata.alphabet.symbol(b)]) pairs.add(a * k + b);
+            }
+        }
+        if(pairs.isEmpty() || n == 0) return automata;
+        int[] nonEdges = pairs.toArray();
+
+        //Union-find over the transitions of the automaton
+        int[] parent = new int[n];
+        for(int s = 0; s < n; s++) parent[s] = s;
+        for(int s = 0; s < n; s++){
+            for(int a = 0; a < k; a++){
+                int t = automata.transitions.get((long) s * k + a);
+                if(t < 0) continue;
+                int r1 = find(parent, s);
+                int r2 = find(parent, t);
+                if(r1 != r2) parent[Math.max(r1, r2)] = Math.min(r1, r2);
+            }
+        }
+
+        //covered[root] holds the pairs seen so far in the component, coveredCount stops checking a component once it has them all
+        BitSet[] covered = new BitSet[n];
+        int[] coveredCount = new int[n];
+        for(int s = 0; s < n; s++){
+            int root = find(parent, s);
+            if(coveredCount[root] == nonEdges.length) continue;
+            if(covered[root] == null) covered[root] = new BitSet(nonEdges.length);
+
+            long row = (long) s * k;
+            for(int p = 0; p < nonEdges.length; p++){
+                if(automata.transitions.get(row + nonEdges[p] / k) != NO_TRANSITION && automata.transitions.get(row + nonEdges[p] % k) != NO_TRANSITION
+                        && !covered[root].get(p)){
+                    covered[root].set(p);
+                    coveredCount[root]++;
                 }
             }
         }
 
-        return tMatrixConstraints.equals(automataConstraints);
+        IntQueue kept = new IntQueue(n);
+        for(int s = 0; s < n; s++){
+            if(coveredCount[find(parent, s)] == nonEdges.length) kept.add(s);
+        }
+        if(kept.size() == n) return automata;
+
+        return extractAutomata(automata, kept.toArray());
+    }
+
+    private static int find(int[] parent, int s){
+        while(parent[s] != s){
+            parent[s] = parent[parent[s]];
+            s = parent[s];
+        }
+        return s;
+    }
+
+    public static List<Automata> findGroups(Automata automata) {
+        /**
+         * Decomposes a given automata into its strongly connected components.
+         * Each component is turned into its own automata and they are all returned as a list.
+         */
+
+        List<Automata> groups = new ArrayList<>();
+        for(int[] states : StronglyConnected.of(automata.numStates, automata.alphabet.size(), automata.transitions).members()){
+            groups.add(extractAutomata(automata, states));
+        }
+        return groups;
+    }
+
+    public static boolean checkConstraints(Automata automata, boolean[][] transitionMatrix){
+        /**
+         * Determines whether the given automata follows all of the constraints outlined by the original
+         * transition matrix. When checking many automata against the same graph, compile the
+         * Constraints once and use them instead.
+         */
+
+        return new Constraints(transitionMatrix).check(automata);
     }
 
-    public static Automata extractAutomata(Automata automata, List<Integer> states){
+    public static Automata extractAutomata(Automata automata, int[] states){
         /*
         * Extracts the given list of states and their transitions from the given automata
         * and returns them as a new automata.
+        * Transitions to states outside of the list are kept as EXTERNAL_TRANSITION so that
+        * their labels still count towards the constraints of the new automata.
+        * The new transition table is stored on or off the heap, the same as the given one.
         */
-        int newNumStates = states.size();
+        int k = automata.alphabet.size();
+        int newNumStates = states.length;
 
-        Map<Integer, Integer> stateMap = new HashMap<>(newNumStates);
+        int[] stateMap = new int[automata.numStates];
+        Arrays.fill(stateMap, EXTERNAL_TRANSITION);
         for(int i = 0; i < newNumStates; i++){
-            stateMap.put(states.get(i), i);
+            stateMap[states[i]] = i;
         }
 
-        Map<Integer, Map<Character, Integer>> newTransitions = new HashMap<>(newNumStates);
-        for(int s : states){
-            Map<Character, Integer> newT = new HashMap<>();
-            for(Map.Entry<Character, Integer> e : automata.transitions.get(s).entrySet()){
-                newT.put(e.getKey(), stateMap.get(e.getValue()));
+        IntTable newTransitions = IntTable.allocateLike(automata.transitions, (long) newNumStates * k);
+        for(int i = 0; i < newNumStates; i++){
+            long row = (long) states[i] * k;
+            for(int a = 0; a < k; a++){
+                int t = automata.transitions.get(row + a);
+                newTransitions.set((long) i * k + a, t < 0 ? t : stateMap[t]);
             }
-            newTransitions.put(stateMap.get(s),newT);
         }
 
         return new Automata(automata.alphabet, newNumStates, newTransitions);
@@ -306,65 +749,127 @@ public class QuickAutomataCombiner {
 
     public static class Automata {
 
-        Set<Character> alphabet;
+        Alphabet alphabet;
         int numStates;
-        Map<Integer, Map<Character, Integer>> transitions;
-        Map<Integer, List<Integer>> reverseTransitions;
-
-        public Automata(Set<Character> alphabet, int numStates, Map<Integer, Map<Character, Integer>> transitions, Map<Integer, List<Integer>> reverseTransitions){
+        //transitions[state * alphabet.size() + symbol] holds the target state,
+        //NO_TRANSITION or EXTERNAL_TRANSITION
+        IntTable transitions;
+        //The states with a transition into a state are stored in reverseTransitions
+        //from reverseIndex[state] up to reverseIndex[state + 1]
+        IntTable reverseIndex;
+        IntTable reverseTransitions;
+
+        public Automata(Alphabet alphabet, int numStates, IntTable transitions, IntTable reverseIndex, IntTable reverseTransitions){
             this.alphabet = alphabet;
             this.numStates = numStates;
             this.transitions = transitions;
+            this.reverseIndex = reverseIndex;
             this.reverseTransitions = reverseTransitions;
         }
 
-        public Automata(Set<Character> alphabet, int numStates, Map<Integer, Map<Character, Integer>> transitions){
-            this(alphabet, numStates, transitions, null);
+        public Automata(Alphabet alphabet, int numStates, IntTable transitions){
+            this(alphabet, numStates, transitions, null, null);
+        }
+
+        public Automata(Alphabet alphabet, int numStates, int[] transitions){
+            this(alphabet, numStates, IntTable.of(transitions));
         }
 
         public void calcReverse(){
             /**
-             * Calculates the reverse of the transition matrix and saves it in the 
-             * reverseTransitions variable.
+             * Calculates the reverse of the transition matrix and saves it in the
+             * reverseIndex and reverseTransitions variables, on or off the heap the same as the transitions.
              * This function must be called before data from reverseTransitions is accessed.
              */
 
-            reverseTransitions = new HashMap<>();
+            long size = transitions.length();
+            int k = alphabet.size();
+
+            if(reverseIndex != null) reverseIndex.close();
+            if(reverseTransitions != null) reverseTransitions.close();
+
+            reverseIndex = IntTable.allocateLike(transitions, numStates + 1);
+            for(long i = 0; i < size; i++){
+                int t = transitions.get(i);
+                if(t >= 0) reverseIndex.set(t + 1, reverseIndex.get(t + 1) + 1);
+            }
+            for(int s = 0; s < numStates; s++){
+                reverseIndex.set(s + 1, reverseIndex.get(s + 1) + reverseIndex.get(s));
+            }
 
-            for(Map.Entry<Integer, Map<Character, Integer>> entry : transitions.entrySet()){
-                for(Map.Entry<Character, Integer> entry2 : entry.getValue().entrySet()){
-                    reverseTransitions.putIfAbsent(entry2.getValue(), new ArrayList<>());
-                    reverseTransitions.get(entry2.getValue()).add(entry.getKey());
+            reverseTransitions = IntTable.allocateLike(transitions, reverseIndex.get(numStates));
+            try(IntTable fill = reverseIndex.copy()){
+                for(long i = 0; i < size; i++){
+                    int t = transitions.get(i);
+                    if(t < 0) continue;
+                    int at = fill.get(t);
+                    fill.set(t, at + 1);
+                    reverseTransitions.set(at, (int) (i / k));
                 }
             }
         }
 
-        public List<Integer> reverseTransitionList(){
+        public void free(){
+            /**
+             * Gives back the memory of the transition tables once the automata is no longer needed.
+             * Tables on the heap are left for the garbage collector, so this only matters for automata
+             * built off the heap. The automata cannot be used afterwards.
+             */
+
+            transitions.close();
+            if(reverseIndex != null) reverseIndex.close();
+            if(reverseTransitions != null) reverseTransitions.close();
+        }
+
+        public int[] reverseTransitionList(){
             /**
              * Returns a list containing all the states that have in-transitions.
              */
 
-            Set<Integer> l = new HashSet<>();
+            return incomingStates().stream().toArray();
+        }
 
-            transitions.values().stream().forEach(m -> l.addAll(m.values()));
+        private BitSet incomingStates(){
+            BitSet bs = new BitSet(numStates);
 
-            return new ArrayList<>(l);
+            long size = transitions.length();
+            for(long i = 0; i < size; i++){
+                int t = transitions.get(i);
+                if(t >= 0) bs.set(t);
+            }
+
+            return bs;
         }
 
-        public List<Integer> sourceNodes(){
+        public BitSet incomingSymbols(){
             /**
-             * Returns a list containing all the states that have no in-transitions.
+             * Returns a bitset where bit (state * alphabet.size() + symbol) is set
+             * if the state has an in-transition on that symbol.
              */
 
-            BitSet bs = new BitSet(numStates);
+            int k = alphabet.size();
+            BitSet bs = new BitSet(numStates * k);
 
-            for(Map<Character, Integer> me1 : transitions.values()){
-                for(int s : me1.values()) bs.set(s);
+            long size = transitions.length();
+            for(long i = 0; i < size; i++){
+                int t = transitions.get(i);
+                if(t >= 0) bs.set(t * k + (int) (i % k));
             }
 
-            List<Integer> states = new ArrayList<>();
+            return bs;
+        }
+
+        public int[] sourceNodes(){
+            /**
+             * Returns a list containing all the states that have no in-transitions.
+             */
+
+            BitSet bs = incomingStates();
+
+            int[] states = new int[numStates - bs.cardinality()];
+            int n = 0;
             for (int i = bs.previousClearBit(numStates-1); i != -1; i = bs.previousClearBit(i - 1)) {
-                states.add(i);
+                states[n++] = i;
             }
 
             return states;
@@ -377,6 +882,8 @@ public class QuickAutomataCombiner {
              * https://ivanzuzak.info/noam/webapps/fsm_simulator/
              */
 
+            int k = alphabet.size();
+
             System.out.println("#states");
             for(int s = 0; s < numStates; s++){
                 System.out.println(s);
@@ -391,85 +898,154 @@ public class QuickAutomataCombiner {
             }
 
             System.out.println("#alphabet");
-            for(Character a : alphabet){
-                System.out.println(a);
+            for(int a : alphabet.symbols){
+                System.out.println(Alphabet.name(a));
             }
 
             System.out.println("#transitions");
-            for(Map.Entry<Integer, Map<Character, Integer>> e1 : transitions.entrySet()){
-                for(Map.Entry<Character, Integer> e2 : e1.getValue().entrySet()){
-                    System.out.println(e1.getKey() + ":" + e2.getKey() + ">" + e2.getValue());
+            for(int s = 0; s < numStates; s++){
+                for(int a = 0; a < k; a++){
+                    int t = transitions.get((long) s * k + a);
+                    if(t >= 0) System.out.println(s + ":" + Alphabet.name(alphabet.symbol(a)) + ">" + t);
                 }
             }
         }
 
         public void writeToFile(){
+            writeToFile("automata.bin");
+        }
+
+        public void writeToFile(String fileName){
             /**
-             * Performs the same as the print() function except it saves the output to a file
-             * titled "automata.txt" rather than printing to the console.
-             * https://ivanzuzak.info/noam/webapps/fsm_simulator/
+             * Saves the automaton in the binary format of AutomataFile, which the visualiser can read.
+             * Every state is saved as accepting, and state 0 as the initial state, the same as print().
+             * It can be converted to the text format of print() with: java AutomataFile automata.bin automata.txt
              */
 
             try {
-                BufferedWriter writer = new BufferedWriter(new FileWriter("automata.txt"));
-            
-                writer.write("#states");
-                writer.newLine();
-                for(int s = 0; s < numStates; s++){
-                    writer.write(Integer.toString(s));
-                    writer.newLine();
-                }
+                AutomataFile.write(fileName, alphabet.symbols, numStates, 0, null, transitions);
+                System.out.println("File write successfull");
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
 
-                writer.write("#initial");
-                writer.newLine();
-                writer.write(Integer.toString(0));
-                writer.newLine();
+        public static Automata readFromFile(String fileName) throws IOException {
+            /**
+             * Loads an automaton saved by writeToFile.
+             */
 
-                writer.write("#accepting");
-                writer.newLine();
-                for(int s = 0; s < numStates; s++){
-                    writer.write(Integer.toString(s));
-                    writer.newLine();
-                }
+            return fromFile(AutomataFile.read(fileName));
+        }
 
-                writer.write("#alphabet");
-                writer.newLine();
-                for(Character a : alphabet){
-                    writer.write(a);
-                    writer.newLine();
-                }
+        public static Automata fromFile(AutomataFile file){
+            //The transitions are read straight from the mapped file, combining never writes to a table it did not build
+            return new Automata(Alphabet.of(file.alphabet), file.numStates(), file.table());
+        }
+
+        public Automata clone(){
+            /**
+             * Returns a copy of the current automata, on or off the heap the same as this one.
+             */
+
+            return new Automata(alphabet, numStates, transitions.copy());
+        }
+    }
+
+
+    public static class Constraints {
+        /*
+         * The constraints of a graph compiled into bit matrices, so that many groups can be checked against them.
+         *
+         * A group passes when the pairs of symbols that are available together at some state (have a transition,
+         * possibly to outside the group) are exactly the pairs of vertices that are not joined by an edge.
+         * Row i of each matrix is a bitmask of vertices, one bit per vertex in as many longs as needed.
+         * The symbols available at each state are turned into a mask of the same kind, so all of the pairs
+         * of a state are checked and added with a few ANDs and ORs per symbol instead of one set entry per pair.
+         * A group fails as soon as a pair joined by an edge is available together, and once every required
+         * pair has been seen only that is looked for in the rest of the states.
+         */
 
-                writer.write("#transitions");
-                for(Map.Entry<Integer, Map<Character, Integer>> e1 : transitions.entrySet()){
-                    for(Map.Entry<Character, Integer> e2 : e1.getValue().entrySet()){
-                        writer.newLine();
-                        writer.write(e1.getKey() + ":" + e2.getKey() + ">" + e2.getValue());
+        final int n;
+        final int words;
+        final long[][] adjacent;
+        final long[][] nonAdjacent;
+
+        //Number of required pairs, each counted once from either end
+        final int required;
+
+        public Constraints(boolean[][] transitionMatrix){
+            this.n = transitionMatrix.length;
+            this.words = (n + 63) >>> 6;
+            this.adjacent = new long[n][words];
+            this.nonAdjacent = new long[n][words];
+
+            int required = 0;
+            for(int i = 0; i < n; i++){
+                for(int j = 0; j < n; j++){
+                    if(i == j) continue;
+                    if(transitionMatrix[i][j]) adjacent[i][j >>> 6] |= 1L << j;
+                    else{
+                        nonAdjacent[i][j >>> 6] |= 1L << j;
+                        required++;
                     }
                 }
-
-                writer.close();
-                System.out.println("File write successfull");
-            } catch (IOException e) {
-                e.printStackTrace();
             }
+            this.required = required;
         }
 
-        public Automata clone(){
+        public boolean check(Automata automata){
+            int[] states = new int[automata.numStates];
+            for(int s = 0; s < states.length; s++) states[s] = s;
+            return check(automata, states);
+        }
+
+        public boolean check(Automata automata, int[] states){
             /**
-             * Returns a copy of the current automata.
+             * Checks the group made of the given states of the automata.
              */
 
-            Set<Character> calphabet = new HashSet<Character>(alphabet);
-            
-            Map<Integer, Map<Character, Integer>> ctransitions = new HashMap<>();
-            for(Map.Entry<Integer, Map<Character, Integer>> m1 : transitions.entrySet()){
-                Map<Character, Integer> temp = new HashMap<>();
-                for(Map.Entry<Character, Integer> m2 : m1.getValue().entrySet()){
-                    temp.put(m2.getKey(), m2.getValue());
+            int k = automata.alphabet.size();
+            int[] symbols = automata.alphabet.symbols;
+
+            long[][] covered = new long[n][words];
+            int remaining = required;
+            long[] mask = new long[words];
+            int[] available = new int[k];
+
+            for(int s : states){
+                int m = 0;
+                long row = (long) s * k;
+                for(int a = 0; a < k; a++){
+                    if(automata.transitions.get(row + a) != NO_TRANSITION){
+                        int v = symbols[a];
+                        available[m++] = v;
+                        mask[v >>> 6] |= 1L << v;
+                    }
+                }
+
+                if(m >= 2){
+                    for(int i = 0; i < m; i++){
+                        int v = available[i];
+                        for(int w = 0; w < words; w++){
+                            if((mask[w] & adjacent[v][w]) != 0) return false;
+                        }
+
+                        if(remaining == 0) continue;
+                        for(int w = 0; w < words; w++){
+                            long added = mask[w] & nonAdjacent[v][w] & ~covered[v][w];
+                            if(added != 0){
+                                covered[v][w] |= added;
+                                remaining -= Long.bitCount(added);
+                            }
+                        }
+                    }
                 }
-                ctransitions.put(m1.getKey(), temp);
+
+                for(int i = 0; i < m; i++) mask[available[i] >>> 6] = 0;
             }
-            return new Automata(calphabet, numStates, ctransitions);
+
+            return remaining == 0;
         }
     }
 }
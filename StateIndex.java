@@ -0,0 +1,93 @@
+import java.util.Arrays;
+
+
+public class StateIndex {
+    /*
+     * An open addressing hash table that gives every product state key a dense id
+     * in the order that the keys are first seen. Ids are handed out from 0 upwards
+     * so they can be used directly as rows in a transition table.
+     */
+
+    private static final long EMPTY = -1;
+
+    long[] table;
+    int[] ids;
+    long[] keys;
+    int size;
+
+    public StateIndex(int expectedSize){
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        ids = new int[capacity];
+        keys = new long[Math.max(4, expectedSize)];
+    }
+
+    public int getOrAdd(long key){
+        /**
+         * Returns the id of the given key, giving it the next free id if it has not been seen before.
+         */
+
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while(table[slot] != EMPTY){
+            if(table[slot] == key) return ids[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        int id = size++;
+        table[slot] = key;
+        ids[slot] = id;
+        if(id == keys.length) keys = Arrays.copyOf(keys, keys.length * 2);
+        keys[id] = key;
+
+        if(size * 2 > table.length) grow();
+
+        return id;
+    }
+
+    public int get(long key){
+        /**
+         * Returns the id of the given key, or -1 if it has not been seen.
+         */
+
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while(table[slot] != EMPTY){
+            if(table[slot] == key) return ids[slot];
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public long key(int id){
+        return keys[id];
+    }
+
+    public int size(){
+        return size;
+    }
+
+    private void grow(){
+        long[] oldTable = table;
+        int[] oldIds = ids;
+
+        table = new long[oldTable.length * 2];
+        Arrays.fill(table, EMPTY);
+        ids = new int[table.length];
+
+        int mask = table.length - 1;
+        for(int i = 0; i < oldTable.length; i++){
+            if(oldTable[i] == EMPTY) continue;
+            int slot = hash(oldTable[i]) & mask;
+            while(table[slot] != EMPTY) slot = (slot + 1) & mask;
+            table[slot] = oldTable[i];
+            ids[slot] = oldIds[i];
+        }
+    }
+
+    private static int hash(long key){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
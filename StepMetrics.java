@@ -0,0 +1,206 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+
+public class StepMetrics {
+    /*
+     * Measurements of a single combine step: how big the automata going in were, how big the product was
+     * before and after it was trimmed and minimised, how long each part of the step took, and how much
+     * memory the step allocated.
+     *
+     * Every step is passed to the listener set with CombinerOptions.listener, and is also emitted as a
+     * JFR event (automata.CombineStep) so it shows up in any flight recording of the program.
+     *
+     * A part of the step that is fused into another one or turned off takes no time. When the reachable
+     * product is used, the trim time of FullAutomataCombiner is the removal of dead states, and
+     * QuickAutomataCombiner trims while it builds the product, so all of its time is combine time
+     * and its trim time is only the time spent dropping components that break the constraints.
+     * Allocated bytes are counted on the thread running the step, which allocates the product itself
+     * even when the rows are filled in by a pool.
+     */
+
+    public interface Listener {
+        /**
+         * Called once after every combine step. Steps of the tree reduction can finish
+         * on several threads at once, so the listener has to be thread safe.
+         */
+        void stepCompleted(StepMetrics metrics);
+    }
+
+    //"full" or "quick"
+    String combiner;
+    //Steps are numbered from 1 in the order they finish
+    int step;
+
+    long leftStates;
+    long rightStates;
+    int alphabetSize;
+
+    //States of the product before it was trimmed
+    long productStates;
+    //States after trimming, and after minimisation (the same as trimmed if it is turned off)
+    long trimmedStates;
+    long minimisedStates;
+
+    long combineNanos;
+    long trimNanos;
+    long renameNanos;
+    long hopcroftNanos;
+
+    long allocatedBytes;
+
+    //States held by all of the automata of the check at once, counting each product at its size before trimming
+    long liveStates;
+    long peakLiveStates;
+
+    Event event;
+
+    public long totalNanos(){
+        return combineNanos + trimNanos + renameNanos + hopcroftNanos;
+    }
+
+    public static String csvHeader(){
+        return "combiner,step,left_states,right_states,alphabet_size,product_states,trimmed_states,minimised_states,"
+             + "combine_ns,trim_ns,rename_ns,hopcroft_ns,allocated_bytes,live_states,peak_live_states";
+    }
+
+    public String toCsv(){
+        return combiner + "," + step + "," + leftStates + "," + rightStates + "," + alphabetSize + "," + productStates + ","
+             + trimmedStates + "," + minimisedStates + "," + combineNanos + "," + trimNanos + "," + renameNanos + ","
+             + hopcroftNanos + "," + allocatedBytes + "," + liveStates + "," + peakLiveStates;
+    }
+
+    public String toJson(){
+        return "{\"combiner\": \"" + combiner + "\", \"step\": " + step + ", \"leftStates\": " + leftStates
+             + ", \"rightStates\": " + rightStates + ", \"alphabetSize\": " + alphabetSize + ", \"productStates\": " + productStates
+             + ", \"trimmedStates\": " + trimmedStates + ", \"minimisedStates\": " + minimisedStates
+             + ", \"combineNanos\": " + combineNanos + ", \"trimNanos\": " + trimNanos + ", \"renameNanos\": " + renameNanos
+             + ", \"hopcroftNanos\": " + hopcroftNanos + ", \"allocatedBytes\": " + allocatedBytes
+             + ", \"liveStates\": " + liveStates + ", \"peakLiveStates\": " + peakLiveStates + "}";
+    }
+
+    @Override
+    public String toString(){
+        return String.format("Step %d (%s): %d x %d states, %d symbols -> product %d, trimmed %d, minimised %d - "
+                           + "combine %.3f ms, trim %.3f ms, rename %.3f ms, hopcroft %.3f ms - %d bytes allocated - peak live states %d",
+                             step, combiner, leftStates, rightStates, alphabetSize, productStates, trimmedStates, minimisedStates,
+                             combineNanos / 1e6, trimNanos / 1e6, renameNanos / 1e6, hopcroftNanos / 1e6, allocatedBytes, peakLiveStates);
+    }
+
+
+    public static class Recorder {
+        /*
+         * Numbers the steps of one check and keeps count of the states held by its automata.
+         * A new recorder is made for every call to checkWordRepresentable, so checks running
+         * at the same time with the same options are counted separately.
+         */
+
+        static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+        final String combiner;
+        final Listener listener;
+        final AtomicInteger steps = new AtomicInteger();
+        final AtomicLong live;
+        final AtomicLong peak;
+
+        public Recorder(String combiner, long initialStates, Listener listener){
+            this.combiner = combiner;
+            this.listener = listener;
+            this.live = new AtomicLong(initialStates);
+            this.peak = new AtomicLong(initialStates);
+        }
+
+        public StepMetrics start(long leftStates, long rightStates){
+            /**
+             * Starts measuring a step. finish has to be called on the same thread.
+             */
+
+            StepMetrics metrics = new StepMetrics();
+            metrics.combiner = combiner;
+            metrics.leftStates = leftStates;
+            metrics.rightStates = rightStates;
+            metrics.event = new Event();
+            metrics.event.begin();
+            metrics.allocatedBytes = -allocatedBytes();
+            return metrics;
+        }
+
+        public void finish(StepMetrics metrics){
+            /**
+             * Finishes measuring a step once its sizes and times are filled in,
+             * then passes it to the listener and the flight recorder.
+             */
+
+            metrics.allocatedBytes += allocatedBytes();
+            metrics.step = steps.incrementAndGet();
+
+            //The inputs and the untrimmed product are all held at once, then the inputs are replaced by the result
+            long current = live.addAndGet(metrics.productStates);
+            metrics.peakLiveStates = peak.accumulateAndGet(current, Math::max);
+            metrics.liveStates = live.addAndGet(metrics.minimisedStates - metrics.productStates - metrics.leftStates - metrics.rightStates);
+
+            Event event = metrics.event;
+            metrics.event = null;
+            event.end();
+            if(event.shouldCommit()){
+                event.combiner = metrics.combiner;
+                event.step = metrics.step;
+                event.leftStates = metrics.leftStates;
+                event.rightStates = metrics.rightStates;
+                event.alphabetSize = metrics.alphabetSize;
+                event.productStates = metrics.productStates;
+                event.trimmedStates = metrics.trimmedStates;
+                event.minimisedStates = metrics.minimisedStates;
+                event.combineNanos = metrics.combineNanos;
+                event.trimNanos = metrics.trimNanos;
+                event.renameNanos = metrics.renameNanos;
+                event.hopcroftNanos = metrics.hopcroftNanos;
+                event.allocatedBytes = metrics.allocatedBytes;
+                event.peakLiveStates = metrics.peakLiveStates;
+                event.commit();
+            }
+
+            if(listener != null) listener.stepCompleted(metrics);
+        }
+
+        static long allocatedBytes(){
+            if(THREADS == null) return 0;
+            return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        static com.sun.management.ThreadMXBean threadBean(){
+            if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) return null;
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ? threads : null;
+        }
+    }
+
+
+    @Name("automata.CombineStep")
+    @Label("Combine Step")
+    @Category("Automata")
+    @Description("One step of combining two automata into their product")
+    static class Event extends jdk.jfr.Event {
+        @Label("Combiner") String combiner;
+        @Label("Step") int step;
+        @Label("Left States") long leftStates;
+        @Label("Right States") long rightStates;
+        @Label("Alphabet Size") int alphabetSize;
+        @Label("Product States") long productStates;
+        @Label("Trimmed States") long trimmedStates;
+        @Label("Minimised States") long minimisedStates;
+        @Label("Combine Time") @Timespan(Timespan.NANOSECONDS) long combineNanos;
+        @Label("Trim Time") @Timespan(Timespan.NANOSECONDS) long trimNanos;
+        @Label("Rename Time") @Timespan(Timespan.NANOSECONDS) long renameNanos;
+        @Label("Hopcroft Time") @Timespan(Timespan.NANOSECONDS) long hopcroftNanos;
+        @Label("Allocated") @DataAmount long allocatedBytes;
+        @Label("Peak Live States") long peakLiveStates;
+    }
+}
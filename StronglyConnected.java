@@ -0,0 +1,131 @@
+import java.util.Arrays;
+
+
+public class StronglyConnected {
+    /*
+     * Finds the strongly connected components of an automaton stored as a dense transition table,
+     * where transitions[state * k + symbol] holds the target state or a negative number for no transition.
+     *
+     * This is Tarjan's algorithm with the recursion replaced by an explicit stack of states and the next
+     * symbol to try from each of them, so automata with millions of states do not overflow the call stack.
+     * It runs in time linear in the size of the table and only allocates a few int arrays, one entry per state.
+     *
+     * Components are numbered in the order Tarjan's algorithm completes them, so every transition between
+     * two components goes from a higher number to a lower one (or stays in the same component).
+     */
+
+    final int[] component;
+    final int count;
+
+    StronglyConnected(int[] component, int count){
+        this.component = component;
+        this.count = count;
+    }
+
+    public int count(){
+        return count;
+    }
+
+    public int component(int state){
+        return component[state];
+    }
+
+    public int[] components(){
+        /**
+         * Returns the component of every state, indexed by state.
+         */
+
+        return component;
+    }
+
+    public int[][] members(){
+        /**
+         * Returns the states of every component, in increasing order.
+         */
+
+        int[] size = new int[count];
+        for(int c : component) size[c]++;
+
+        int[][] members = new int[count][];
+        for(int c = 0; c < count; c++) members[c] = new int[size[c]];
+
+        int[] filled = new int[count];
+        for(int s = 0; s < component.length; s++) members[component[s]][filled[component[s]]++] = s;
+        return members;
+    }
+
+    public static StronglyConnected of(int numStates, int k, int[] transitions){
+        return of(numStates, k, IntTable.of(transitions));
+    }
+
+    public static StronglyConnected of(int numStates, int k, IntTable transitions){
+        int[] index = new int[numStates];
+        int[] lowLink = new int[numStates];
+        int[] component = new int[numStates];
+        Arrays.fill(component, -1);
+
+        //Tarjan's stack of states whose component is not finished yet
+        int[] stack = new int[numStates];
+        int stackSize = 0;
+
+        //The explicit call stack: a state and the next symbol to follow from it
+        int[] callState = new int[numStates];
+        int[] callSymbol = new int[numStates];
+        int depth;
+
+        int nextIndex = 1;
+        int count = 0;
+
+        for(int root = 0; root < numStates; root++){
+            if(index[root] != 0) continue;
+
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            callState[0] = root;
+            callSymbol[0] = 0;
+            depth = 1;
+
+            while(depth > 0){
+                int s = callState[depth - 1];
+                int a = callSymbol[depth - 1];
+
+                if(a < k){
+                    callSymbol[depth - 1] = a + 1;
+                    int t = transitions.get((long) s * k + a);
+                    if(t < 0) continue;
+
+                    if(index[t] == 0){
+                        index[t] = lowLink[t] = nextIndex++;
+                        stack[stackSize++] = t;
+                        callState[depth] = t;
+                        callSymbol[depth] = 0;
+                        depth++;
+                    }
+                    else if(component[t] == -1){
+                        //t is still on the stack
+                        lowLink[s] = Math.min(lowLink[s], index[t]);
+                    }
+                    continue;
+                }
+
+                //Every transition of s has been followed
+                if(lowLink[s] == index[s]){
+                    int t;
+                    do {
+                        t = stack[--stackSize];
+                        component[t] = count;
+                    } while(t != s);
+                    count++;
+                }
+
+                depth--;
+                if(depth > 0){
+                    int parent = callState[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[s]);
+                }
+            }
+        }
+
+        return new StronglyConnected(component, count);
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.concurrent.CancellationException;
+
+
+public class SymbolicChecker {
+    /*
+     * Checks a graph with FullAutomataCombiner's automata without listing the states of their product,
+     * by representing sets of product states as BDDs.
+     *
+     * A state of the product of all of the pair automata made by graphToAutomata is a tuple of pair states,
+     * and each pair state takes two boolean variables. Every variable has a primed copy for the state after
+     * a letter, placed straight after it in the order. Reading a letter only changes the pairs that contain it,
+     * so the transition relation is split up by letter: the relation for a letter only mentions the current
+     * and primed variables of its own pairs, and the image of a set of states under it is a relational product
+     * quantifying away the current variables of those pairs, followed by renaming the primed variables back.
+     *
+     * Pairs that are edges can never accept again once they reach state 3, so the relation never enters those
+     * states, which trims them from the product as they would be trimmed from the explicit automata.
+     * The reachable states are found one breadth first level at a time, and the search stops as soon as a level
+     * holds an accepting state, which is when FullAutomataCombiner finds the graph word-representable.
+     */
+
+    //Pair automaton transitions, the same table as graphToAutomata: row is the state, column 0 is the smaller vertex
+    static final int[] PAIR_TRANSITIONS = SymmetryReduction.PAIR_TRANSITIONS;
+
+    final int n;
+    final boolean[][] graph;
+    final int pairs;
+    final int[][] pair;
+    final Bdd bdd;
+
+    //The relation, the current variables of the pairs, and the renaming of the primed variables, for every letter
+    final int[] relation;
+    final int[] cube;
+    final int[] unprime;
+
+    final int start;
+    final int accepting;
+
+    SymbolicChecker(boolean[][] graph){
+        this.n = graph.length;
+        this.graph = graph;
+        this.pairs = n * (n - 1) / 2;
+        this.pair = new int[n][n];
+        int p = 0;
+        for(int i = 0; i < n; i++){
+            for(int j = i + 1; j < n; j++){
+                pair[i][j] = p;
+                pair[j][i] = p;
+                p++;
+            }
+        }
+
+        this.bdd = new Bdd(4 * pairs, 1 << 16);
+
+        int start = bdd.ref(Bdd.TRUE);
+        int accepting = bdd.ref(Bdd.TRUE);
+        for(int i = 0; i < n; i++){
+            for(int j = i + 1; j < n; j++){
+                int q = pair[i][j];
+                start = swap(start, bdd.and(start, state(q, 0, false)));
+                int target = bdd.ref(state(q, 3, false));
+                if(graph[i][j]){
+                    int one = bdd.ref(state(q, 1, false));
+                    target = swap(target, bdd.or(one, state(q, 2, false)));
+                    bdd.deref(one);
+                }
+                accepting = swap(accepting, bdd.and(accepting, target));
+                bdd.deref(target);
+            }
+        }
+        this.start = start;
+        this.accepting = accepting;
+
+        this.relation = new int[n];
+        this.cube = new int[n];
+        this.unprime = new int[4 * pairs];
+        for(int v = 0; v < 4 * pairs; v++) unprime[v] = v % 2 == 1 ? v - 1 : v;
+
+        for(int letter = 0; letter < n; letter++){
+            int r = bdd.ref(Bdd.TRUE);
+            int[] vars = new int[2 * (n - 1)];
+            int m = 0;
+            for(int other = 0; other < n; other++){
+                if(other == letter) continue;
+                int q = pair[letter][other];
+                r = swap(r, bdd.and(r, pairRelation(q, letter < other ? 0 : 1, graph[letter][other])));
+                vars[m++] = 4 * q;
+                vars[m++] = 4 * q + 2;
+            }
+            relation[letter] = r;
+            cube[letter] = bdd.ref(bdd.cube(vars));
+        }
+    }
+
+    public static boolean check(boolean[][] graph, boolean verbose){
+        /**
+         * Returns true if the product of the pair automata of the graph accepts a word,
+         * which is when FullAutomataCombiner finds the graph word-representable.
+         */
+
+        if(graph.length < 2) return true;
+        return new SymbolicChecker(graph).search(verbose);
+    }
+
+    boolean search(boolean verbose){
+        int reached = bdd.ref(start);
+        int frontier = bdd.ref(start);
+        boolean found = bdd.and(start, accepting) != Bdd.FALSE;
+        int levels = 0;
+
+        while(!found && frontier != Bdd.FALSE){
+            if(Thread.currentThread().isInterrupted()) throw new CancellationException("Check was interrupted");
+
+            int image = bdd.ref(Bdd.FALSE);
+            for(int letter = 0; letter < n; letter++){
+                int step = bdd.replace(bdd.andExists(frontier, relation[letter], cube[letter]), unprime);
+                image = swap(image, bdd.or(image, step));
+            }
+
+            int fresh = bdd.ref(bdd.andNot(image, reached));
+            bdd.deref(image);
+            found = bdd.and(fresh, accepting) != Bdd.FALSE;
+
+            reached = swap(reached, bdd.or(reached, fresh));
+            bdd.deref(frontier);
+            frontier = fresh;
+            levels++;
+        }
+
+        if(verbose){
+            int[] current = new int[2 * pairs];
+            for(int q = 0; q < pairs; q++){
+                current[2 * q] = 4 * q;
+                current[2 * q + 1] = 4 * q + 2;
+            }
+            System.out.printf("Levels: %d - Reachable States: %.0f - BDD Nodes: %d - Live Nodes: %d - Collections: %d%n",
+                              levels, bdd.satCount(reached, current), bdd.nodeCount(reached), bdd.liveNodes(), bdd.collections());
+        }
+
+        bdd.deref(frontier);
+        bdd.deref(reached);
+        return found;
+    }
+
+    int state(int q, int s, boolean primed){
+        //The variables of pair q hold the high bit of its state then the low bit, each followed by its primed copy
+        int offset = primed ? 1 : 0;
+        int hi = (s & 2) != 0 ? bdd.var(4 * q + offset) : bdd.nvar(4 * q + offset);
+        int lo = (s & 1) != 0 ? bdd.var(4 * q + 2 + offset) : bdd.nvar(4 * q + 2 + offset);
+        return bdd.and(hi, lo);
+    }
+
+    int pairRelation(int q, int column, boolean edge){
+        //The moves of pair q on one of its letters, leaving out the state 3 of an edge.
+        //The result is not referenced, so it has to be used before the next operation
+        int r = bdd.ref(Bdd.FALSE);
+        for(int s = 0; s < 4; s++){
+            int t = PAIR_TRANSITIONS[s * 2 + column];
+            if(edge && (s == 3 || t == 3)) continue;
+            int from = bdd.ref(state(q, s, false));
+            int move = bdd.and(from, state(q, t, true));
+            bdd.deref(from);
+            r = swap(r, bdd.or(r, move));
+        }
+        bdd.deref(r);
+        return r;
+    }
+
+    int swap(int old, int replacement){
+        //Holds the replacement and lets go of the old function
+        bdd.ref(replacement);
+        bdd.deref(old);
+        return replacement;
+    }
+}
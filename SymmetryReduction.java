@@ -0,0 +1,199 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+
+public class SymmetryReduction {
+    /*
+     * Checks a graph with FullAutomataCombiner's automata while only keeping one state of every set of
+     * product states that are the same up to a symmetry of the graph.
+     *
+     * The product of all of the pair automata made by graphToAutomata has one state for every tuple of pair states.
+     * An automorphism of the graph maps edges to edges and non-edges to non-edges, so renaming the letters of
+     * a word by it maps the run of the product on the word to the run on the renamed word: the state of pair (i, j)
+     * moves to the pair of the images of i and j, with states 1 and 2 (last letter was i / was j) swapped
+     * when the automorphism reverses the order of the pair.
+     * Accepting tuples map to accepting tuples, so a state can be replaced by any of its images without changing
+     * whether an accepting state can be reached. The product is searched from the start state, replacing every new
+     * state by its smallest image, so each orbit is stored once instead of once for every symmetry.
+     *
+     * Pairs that are edges can never accept again once they reach state 3, so those states are dropped as they are found,
+     * the same as trimming them afterwards would. The search stops as soon as an accepting state is found.
+     *
+     * Every pair state takes 2 bits of a long, so graphs with at most 8 vertices are supported.
+     */
+
+    public static final int MAX_VERTICES = 8;
+
+    //Every new state is compared with its image under each automorphism, so very large groups are cut off here
+    public static final int MAX_GROUP_SIZE = 1 << 12;
+
+    //Pair automaton transitions, the same table as graphToAutomata: row is the state, column 0 is the smaller vertex
+    static final int[] PAIR_TRANSITIONS = new int[]{1, 2,
+                                                    3, 2,
+                                                    1, 3,
+                                                    3, 3};
+
+    final int n;
+    final boolean[][] graph;
+    final int[][] pair;
+    final List<int[]> automorphisms;
+
+    //For every automorphism, where each pair moves to and whether its order is reversed
+    final int[][] pairImage;
+    final boolean[][] pairReversed;
+
+    SymmetryReduction(boolean[][] graph, int maxGroupSize){
+        this.n = graph.length;
+        this.graph = graph;
+
+        this.pair = new int[n][n];
+        int p = 0;
+        for(int i = 0; i < n; i++){
+            for(int j = i + 1; j < n; j++){
+                pair[i][j] = p;
+                pair[j][i] = p;
+                p++;
+            }
+        }
+
+        this.automorphisms = automorphisms(graph, maxGroupSize);
+        this.pairImage = new int[automorphisms.size()][p];
+        this.pairReversed = new boolean[automorphisms.size()][p];
+        for(int a = 0; a < automorphisms.size(); a++){
+            int[] sigma = automorphisms.get(a);
+            for(int i = 0; i < n; i++){
+                for(int j = i + 1; j < n; j++){
+                    pairImage[a][pair[i][j]] = pair[sigma[i]][sigma[j]];
+                    pairReversed[a][pair[i][j]] = sigma[i] > sigma[j];
+                }
+            }
+        }
+    }
+
+    public static boolean check(boolean[][] graph, int maxGroupSize, boolean verbose){
+        /**
+         * Returns true if the product of the pair automata of the graph accepts a word,
+         * which is when FullAutomataCombiner finds the graph word-representable.
+         * At most maxGroupSize automorphisms are used, using fewer only means storing more states.
+         */
+
+        if(graph.length > MAX_VERTICES) throw new IllegalArgumentException("Symmetry reduction supports at most " + MAX_VERTICES + " vertices");
+
+        SymmetryReduction reduction = new SymmetryReduction(graph, maxGroupSize);
+        return reduction.search(verbose);
+    }
+
+    boolean search(boolean verbose){
+        StateIndex seen = new StateIndex(1024);
+        IntQueue queue = new IntQueue(1024);
+
+        seen.getOrAdd(0L);
+        queue.add(0);
+
+        boolean found = false;
+        while(!queue.isEmpty() && !found){
+            if(Thread.currentThread().isInterrupted()) throw new CancellationException("Check was interrupted");
+            long state = seen.key(queue.poll());
+
+            for(int a = 0; a < n && !found; a++){
+                long next = step(state, a);
+                if(next == -1) continue;
+
+                next = canonical(next);
+                int before = seen.size();
+                int id = seen.getOrAdd(next);
+                if(id < before) continue;
+
+                if(accepting(next)) found = true;
+                queue.add(id);
+            }
+        }
+
+        if(verbose) System.out.println("Automorphisms: " + automorphisms.size() + " - Number of States: " + seen.size());
+
+        return found;
+    }
+
+    long step(long state, int letter){
+        /**
+         * Returns the state after reading the letter, or -1 if an edge stops alternating.
+         */
+
+        for(int other = 0; other < n; other++){
+            if(other == letter) continue;
+
+            int shift = 2 * pair[letter][other];
+            int s = (int) (state >>> shift) & 3;
+            int next = PAIR_TRANSITIONS[s * 2 + (letter < other ? 0 : 1)];
+            if(next == 3 && graph[letter][other]) return -1;
+
+            state = (state & ~(3L << shift)) | ((long) next << shift);
+        }
+        return state;
+    }
+
+    boolean accepting(long state){
+        for(int i = 0; i < n; i++){
+            for(int j = i + 1; j < n; j++){
+                int s = (int) (state >>> (2 * pair[i][j])) & 3;
+                if(graph[i][j] ? s != 1 && s != 2 : s != 3) return false;
+            }
+        }
+        return true;
+    }
+
+    long canonical(long state){
+        /**
+         * Returns the smallest image of the state under the automorphisms.
+         */
+
+        long smallest = state;
+        for(int a = 0; a < pairImage.length; a++){
+            long image = 0;
+            for(int p = 0; p < pairImage[a].length; p++){
+                int s = (int) (state >>> (2 * p)) & 3;
+                if(pairReversed[a][p] && (s == 1 || s == 2)) s ^= 3;
+                image |= (long) s << (2 * pairImage[a][p]);
+            }
+            if(Long.compareUnsigned(image, smallest) < 0) smallest = image;
+        }
+        return smallest;
+    }
+
+    public static List<int[]> automorphisms(boolean[][] graph, int limit){
+        /**
+         * Returns up to limit automorphisms of the graph. They are found in lexicographic order,
+         * so the first is always the identity.
+         */
+
+        List<int[]> automorphisms = new ArrayList<>();
+        int[] sigma = new int[graph.length];
+        boolean[] used = new boolean[graph.length];
+        extend(graph, sigma, used, 0, automorphisms, limit);
+        return automorphisms;
+    }
+
+    private static void extend(boolean[][] graph, int[] sigma, boolean[] used, int v, List<int[]> automorphisms, int limit){
+        if(automorphisms.size() >= limit) return;
+        if(v == graph.length){
+            automorphisms.add(sigma.clone());
+            return;
+        }
+
+        for(int image = 0; image < graph.length; image++){
+            if(used[image]) continue;
+
+            boolean consistent = true;
+            for(int u = 0; u < v && consistent; u++){
+                consistent = graph[v][u] == graph[image][sigma[u]];
+            }
+            if(!consistent) continue;
+
+            sigma[v] = image;
+            used[image] = true;
+            extend(graph, sigma, used, v + 1, automorphisms, limit);
+            used[image] = false;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+
+public class TreeReduction<A> {
+    /*
+     * Combines a list of automata pairwise in a balanced tree instead of folding them left to right.
+     * Each level pairs up the automata whose alphabets overlap the most, combines every pair
+     * (the pairs of a level are independent so they run concurrently), and passes the results up
+     * to the next level until only one automaton is left.
+     *
+     * A memory budget, counted in product states, limits how many products can be built at once.
+     * Each pair reserves its estimated product size (capped at the whole budget) before it is combined,
+     * so two huge partial products are never built at the same time.
+     */
+
+    public interface Combiner<A> {
+        A combine(A a1, A a2);
+    }
+
+    final Combiner<A> combiner;
+    final Function<A, Alphabet> alphabet;
+    final ToLongFunction<A> numStates;
+    final Predicate<A> hopeless;
+    final Consumer<A> release;
+    final ForkJoinPool pool;
+    final int budget;
+    final Semaphore memory;
+    final boolean verbose;
+
+    public TreeReduction(Combiner<A> combiner, Function<A, Alphabet> alphabet, ToLongFunction<A> numStates,
+                         Predicate<A> hopeless, ForkJoinPool pool, long memoryBudget, boolean verbose){
+        /**
+         * hopeless returns true for a partial result that means the whole reduction can stop early,
+         * such as an automaton with no accepting states. It can be null.
+         */
+
+        this(combiner, alphabet, numStates, hopeless, null, pool, memoryBudget, verbose);
+    }
+
+    public TreeReduction(Combiner<A> combiner, Function<A, Alphabet> alphabet, ToLongFunction<A> numStates,
+                         Predicate<A> hopeless, Consumer<A> release, ForkJoinPool pool, long memoryBudget, boolean verbose){
+        /**
+         * release is given every other result of the level when the reduction stops early at a hopeless one,
+         * so that automata holding memory outside the heap can free it. It can be null.
+         */
+
+        this.combiner = combiner;
+        this.alphabet = alphabet;
+        this.numStates = numStates;
+        this.hopeless = hopeless;
+        this.release = release;
+        this.pool = pool;
+        this.budget = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memoryBudget));
+        this.memory = new Semaphore(budget);
+        this.verbose = verbose;
+    }
+
+    public A reduce(List<A> automatas){
+        /**
+         * Reduces the automata to one, or returns the first hopeless partial result.
+         */
+
+        List<A> level = new ArrayList<>(automatas);
+        int depth = 0;
+
+        while(level.size() > 1){
+            List<int[]> pairs = pair(level);
+            List<A> next = new ArrayList<>();
+            @SuppressWarnings("unchecked")
+            A[] results = (A[]) new Object[pairs.size()];
+
+            List<A> current = level;
+            ParallelRange.run(pairs.size() > 1 ? pool : null, 0, pairs.size(), 1, (from, to) -> {
+                for(int i = from; i < to; i++){
+                    int[] p = pairs.get(i);
+                    if(p[1] == -1){
+                        results[i] = current.get(p[0]);
+                        continue;
+                    }
+                    results[i] = combineGuarded(current.get(p[0]), current.get(p[1]));
+                }
+            });
+
+            long largest = 0;
+            for(A a : results){
+                if(hopeless != null && hopeless.test(a)){
+                    if(release != null){
+                        for(A other : results){
+                            if(other != a) release.accept(other);
+                        }
+                    }
+                    return a;
+                }
+                largest = Math.max(largest, numStates.applyAsLong(a));
+                next.add(a);
+            }
+
+            depth++;
+            if(verbose) System.out.println("Tree level " + depth + ": " + next.size() + " automatas - Largest number of States: " + largest);
+
+            level = next;
+        }
+
+        return level.get(0);
+    }
+
+    private A combineGuarded(A a1, A a2){
+        /**
+         * Combines two automata once their estimated product size fits in the memory budget.
+         */
+
+        long estimate = numStates.applyAsLong(a1) * numStates.applyAsLong(a2);
+        int permits = (int) Math.min(budget, Math.max(1, estimate));
+
+        //Waiting for permits blocks a pool worker, so the pool is told it may start another thread meanwhile.
+        //Checks are cancelled by interrupting them, so the wait gives up when interrupted
+        PermitBlocker blocker = new PermitBlocker(permits);
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Check was interrupted");
+        }
+
+        try {
+            return combiner.combine(a1, a2);
+        } finally {
+            memory.release(permits);
+        }
+    }
+
+    private class PermitBlocker implements ForkJoinPool.ManagedBlocker {
+
+        final int permits;
+        boolean acquired = false;
+
+        PermitBlocker(int permits){
+            this.permits = permits;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if(!acquired){
+                memory.acquire(permits);
+                acquired = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable(){
+            if(!acquired) acquired = memory.tryAcquire(permits);
+            return acquired;
+        }
+    }
+
+    private List<int[]> pair(List<A> level){
+        /**
+         * Greedily pairs every automaton with the unpaired automaton that gives the smallest combined alphabet,
+         * breaking ties by the smallest product. An odd automaton out is paired with -1.
+         */
+
+        int n = level.size();
+        boolean[] paired = new boolean[n];
+        List<int[]> pairs = new ArrayList<>();
+
+        for(int i = 0; i < n; i++){
+            if(paired[i]) continue;
+            paired[i] = true;
+
+            Alphabet alphabet1 = alphabet.apply(level.get(i));
+            long size1 = numStates.applyAsLong(level.get(i));
+            int best = -1;
+            int bestUnion = 0;
+            long bestProduct = 0;
+            for(int j = i + 1; j < n; j++){
+                if(paired[j]) continue;
+
+                int union = alphabet1.unionSize(alphabet.apply(level.get(j)));
+                long product = size1 * numStates.applyAsLong(level.get(j));
+                if(best == -1 || union < bestUnion || (union == bestUnion && product < bestProduct)){
+                    best = j;
+                    bestUnion = union;
+                    bestProduct = product;
+                }
+            }
+
+            if(best != -1) paired[best] = true;
+            pairs.add(new int[]{i, best});
+        }
+
+        return pairs;
+    }
+}
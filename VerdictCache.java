@@ -0,0 +1,175 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+
+public class VerdictCache implements Closeable {
+    /*
+     * Remembers the verdicts of the graphs that have been checked, keyed by their canonical form (see CanonicalForm),
+     * so a graph that comes up again with its vertices labelled differently is answered without combining any automata.
+     *
+     * At most capacity verdicts are kept in memory, and the least recently used one is evicted to make room.
+     * The cache can be backed by a file that every new verdict is appended to, which is read back the next time
+     * the cache is opened so the verdicts survive restarts. Reading the file keeps the most recent capacity verdicts,
+     * and closing the cache rewrites the file with only those once it has grown past twice the capacity.
+     *
+     * Each line of the file is a canonical graph6 string followed by "true" or "false".
+     *
+     *     VerdictCache cache = new VerdictCache(100000, "verdicts.txt");
+     *     QuickAutomataCombiner.checkWordRepresentable(graph, new CombinerOptions().cache(cache));
+     *     System.out.println(cache);
+     *     cache.close();
+     */
+
+    final int capacity;
+    final LinkedHashMap<String, Boolean> verdicts;
+    final Path file;
+    BufferedWriter store;
+    long storedLines = 0;
+
+    long hits = 0;
+    long misses = 0;
+    long evictions = 0;
+
+    public VerdictCache(int capacity){
+        this(capacity, (Path) null);
+    }
+
+    public VerdictCache(int capacity, String fileName) throws IOException {
+        /**
+         * Opens a cache backed by the given file, loading the verdicts already in it.
+         */
+
+        this(capacity, Path.of(fileName));
+
+        if(Files.exists(file)){
+            try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+                String line;
+                while((line = reader.readLine()) != null){
+                    int space = line.indexOf(' ');
+                    if(space == -1) continue;
+                    verdicts.put(line.substring(0, space), Boolean.parseBoolean(line.substring(space + 1).strip()));
+                    storedLines++;
+                }
+            }
+            evictions = 0;
+        }
+
+        store = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private VerdictCache(int capacity, Path file){
+        if(capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+
+        this.capacity = capacity;
+        this.file = file;
+        this.verdicts = new LinkedHashMap<>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest){
+                if(size() <= VerdictCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    public boolean check(boolean[][] graph, Predicate<boolean[][]> checker){
+        /**
+         * Returns the cached verdict of the graph, or checks it with the checker and caches the result.
+         * The check itself runs outside the lock, so other threads can use the cache meanwhile.
+         */
+
+        String key = CanonicalForm.key(graph);
+
+        Boolean cached = get(key);
+        if(cached != null) return cached;
+
+        boolean verdict = checker.test(graph);
+        put(key, verdict);
+        return verdict;
+    }
+
+    public synchronized Boolean get(String key){
+        /**
+         * Returns the verdict of a canonical graph6 string, or null if it is not cached.
+         */
+
+        Boolean verdict = verdicts.get(key);
+        if(verdict == null) misses++;
+        else hits++;
+        return verdict;
+    }
+
+    public synchronized void put(String key, boolean verdict){
+        if(verdicts.put(key, verdict) != null || store == null) return;
+
+        try {
+            store.write(key + " " + verdict);
+            store.newLine();
+            store.flush();
+            storedLines++;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized long hits(){
+        return hits;
+    }
+
+    public synchronized long misses(){
+        return misses;
+    }
+
+    public synchronized long evictions(){
+        return evictions;
+    }
+
+    public synchronized int size(){
+        return verdicts.size();
+    }
+
+    public synchronized double hitRate(){
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        /**
+         * Closes the file behind the cache, first rewriting it with only the cached verdicts if it has grown too large.
+         */
+
+        if(store == null) return;
+        store.close();
+        store = null;
+
+        if(storedLines <= 2L * capacity) return;
+
+        //Least recently used first, so reading the file back keeps the same verdicts
+        Path temp = Path.of(file + ".tmp");
+        try(BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)){
+            for(Map.Entry<String, Boolean> entry : verdicts.entrySet()){
+                writer.write(entry.getKey() + " " + entry.getValue());
+                writer.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        storedLines = verdicts.size();
+    }
+
+    @Override
+    public synchronized String toString(){
+        return String.format("Verdict cache: %d hits, %d misses (%.1f%% hit rate), %d evictions, %d cached",
+                             hits, misses, 100 * hitRate(), evictions, verdicts.size());
+    }
+}
@@ -0,0 +1,278 @@
+import java.util.Arrays;
+
+
+public class WitnessWord {
+    /*
+     * Finds words accepted by a combined automaton of FullAutomataCombiner, so that a graph found word-representable
+     * comes with a word that represents it instead of an automaton to read one out of by hand.
+     *
+     * Every word that represents the graph is accepted by the product of the pair automata, but the pair automata
+     * do not check that every letter is used, so an accepted word can leave out a vertex. The search therefore runs
+     * over pairs of an automaton state and a count of how many times each letter has been read: either only whether
+     * it has been read (for the shortest word), or exactly how many times up to k (for a k-uniform word).
+     * Shortest accepted words nearly always leave out a letter, so the letters are counted from the start.
+     *
+     * A node is keyed by state * radix^k + counts. There are far too many of these to give each one a slot,
+     * so only the nodes that are reached are numbered, by a StateIndex, and each one stores its parent in the
+     * forward search from the start state and in the backward search from the accepting states, which is read
+     * from the reverse transitions. The letters are found again from the parents at the end, so no paths are stored.
+     *
+     * The two searches take turns expanding one whole level of the smaller frontier, and stop the first time a node
+     * is reached from both sides. No shorter path can have been missed by then, as it would have met earlier.
+     */
+
+    //Counting mode where each letter only has to be read once, any other mode is the number of times it has to be read
+    static final int AT_LEAST_ONCE = 0;
+
+    static final int UNVISITED = -1;
+    static final int ROOT = -2;
+
+    final FullAutomataCombiner.Automata automata;
+    final int k;
+    final int[] transitions;
+
+    //Counting mode, and how many values the count of a letter can take
+    final int mode;
+    final int radix;
+    final long[] place;
+    final long codes;
+    final long finalCode;
+
+    //Every node reached so far, and its parents in the two searches by node number
+    final StateIndex nodes = new StateIndex(1024);
+    int[] forward = new int[1024];
+    int[] backward = new int[1024];
+
+    WitnessWord(FullAutomataCombiner.Automata automata, int mode){
+        this.automata = automata;
+        this.k = automata.alphabet.size();
+        this.mode = mode;
+        this.radix = mode == AT_LEAST_ONCE ? 2 : mode + 1;
+
+        //Trimmed states are renamed away first so that every row of the table is a state
+        if(automata.states.length != automata.tableSize()) FullAutomataCombiner.renameAutomata(automata);
+        if(automata.reverseIndex == null) automata.calcReverse();
+        this.transitions = automata.transitions;
+
+        this.place = new long[k];
+        long codes = 1;
+        long finalCode = 0;
+        for(int a = 0; a < k; a++){
+            place[a] = codes;
+            finalCode += (radix - 1) * codes;
+            if(codes > Long.MAX_VALUE / radix / Math.max(1, automata.states.length)) throw new IllegalArgumentException("Too many letter counts to search for a word");
+            codes *= radix;
+        }
+        this.codes = codes;
+        this.finalCode = finalCode;
+
+        Arrays.fill(forward, UNVISITED);
+        Arrays.fill(backward, UNVISITED);
+    }
+
+    public static int[] shortest(FullAutomataCombiner.Automata automata){
+        /**
+         * Returns a shortest word accepted by the automaton that uses every letter of its alphabet,
+         * as the vertices of its letters in order, or null if there is none.
+         * For a combined automaton of a whole graph this is a shortest word that represents the graph.
+         */
+
+        if(automata.acceptingStates.isEmpty()) return null;
+
+        return new WitnessWord(automata, AT_LEAST_ONCE).search();
+    }
+
+    public static int[] uniform(FullAutomataCombiner.Automata automata, int k){
+        /**
+         * Returns a word accepted by the automaton that uses every letter of its alphabet exactly k times,
+         * or null if there is none.
+         */
+
+        if(k < 1) throw new IllegalArgumentException("k must be at least 1");
+        if(automata.acceptingStates.isEmpty()) return null;
+
+        return new WitnessWord(automata, k).search();
+    }
+
+    public static int[] shortestUniform(FullAutomataCombiner.Automata automata, int maxK){
+        /**
+         * Returns a k-uniform word accepted by the automaton for the smallest k up to maxK, or null if there is none.
+         */
+
+        for(int k = 1; k <= maxK; k++){
+            int[] word = uniform(automata, k);
+            if(word != null) return word;
+        }
+        return null;
+    }
+
+    int[] search(){
+        IntQueue forwardQueue = new IntQueue(1024);
+        IntQueue backwardQueue = new IntQueue(1024);
+
+        int start = node((long) automata.startState * codes);
+        forward[start] = ROOT;
+        forwardQueue.add(start);
+
+        for(int s = automata.acceptingStates.nextSetBit(0); s != -1; s = automata.acceptingStates.nextSetBit(s + 1)){
+            int id = node(s * codes + finalCode);
+            backward[id] = ROOT;
+            backwardQueue.add(id);
+        }
+
+        int meet = -1;
+        while(meet == -1 && !forwardQueue.isEmpty() && !backwardQueue.isEmpty()){
+            if(forwardQueue.size() <= backwardQueue.size()) meet = expandForward(forwardQueue);
+            else meet = expandBackward(backwardQueue);
+        }
+        if(meet == -1) return null;
+
+        return word(meet);
+    }
+
+    int node(long key){
+        //Returns the number of a node, numbering it with both parents unvisited if it is new
+        int id = nodes.getOrAdd(key);
+        if(id == forward.length){
+            forward = Arrays.copyOf(forward, id * 2);
+            backward = Arrays.copyOf(backward, id * 2);
+            Arrays.fill(forward, id, id * 2, UNVISITED);
+            Arrays.fill(backward, id, id * 2, UNVISITED);
+        }
+        return id;
+    }
+
+    int expandForward(IntQueue queue){
+        //Expands one level of the forward search, returning a node also reached backwards or -1
+        for(int remaining = queue.size(); remaining > 0; remaining--){
+            int id = queue.poll();
+            long key = nodes.key(id);
+            for(int a = 0; a < k; a++){
+                long nextKey = step(key, a);
+                if(nextKey == -1) continue;
+
+                int next = node(nextKey);
+                if(forward[next] != UNVISITED) continue;
+
+                forward[next] = id;
+                if(backward[next] != UNVISITED) return next;
+                queue.add(next);
+            }
+        }
+        return -1;
+    }
+
+    int expandBackward(IntQueue queue){
+        //Expands one level of the backward search, returning a node also reached forwards or -1
+        int[] reverseIndex = automata.reverseIndex;
+        int[] reverseTransitions = automata.reverseTransitions;
+
+        for(int remaining = queue.size(); remaining > 0; remaining--){
+            int id = queue.poll();
+            long key = nodes.key(id);
+            int t = (int) (key / codes);
+            long code = key % codes;
+
+            for(int a = 0; a < k; a++){
+                long count = code / place[a] % radix;
+
+                //The counts the letter could have had before it was read
+                if(count == 0) continue;
+                long first = code - place[a];
+                long last = mode == AT_LEAST_ONCE ? code : first;
+
+                int end = reverseIndex[t * k + a + 1];
+                for(int i = reverseIndex[t * k + a]; i < end; i++){
+                    int s = reverseTransitions[i];
+                    for(long previous = first; previous <= last; previous += place[a]){
+                        int prev = node(s * codes + previous);
+                        if(backward[prev] != UNVISITED) continue;
+
+                        backward[prev] = id;
+                        if(forward[prev] != UNVISITED) return prev;
+                        queue.add(prev);
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    long step(long key, int a){
+        //Returns the key of the node after reading a, or -1 if there is no transition or the letter is used up
+        int t = transitions[(int) (key / codes) * k + a];
+        if(t == FullAutomataCombiner.NO_TRANSITION) return -1;
+
+        long code = key % codes;
+        long count = code / place[a] % radix;
+        if(mode == AT_LEAST_ONCE){
+            if(count == 0) code += place[a];
+        }
+        else{
+            if(count == mode) return -1;
+            code += place[a];
+        }
+        return t * codes + code;
+    }
+
+    int[] word(int meet){
+        //Follows the parents from the meeting node back to the start and on to an accepting state
+        int prefix = 0;
+        int suffix = 0;
+        for(int id = meet; forward[id] != ROOT; id = forward[id]) prefix++;
+        for(int id = meet; backward[id] != ROOT; id = backward[id]) suffix++;
+
+        int[] word = new int[prefix + suffix];
+        int i = prefix;
+        for(int id = meet; forward[id] != ROOT; id = forward[id]) word[--i] = letter(forward[id], id);
+        i = prefix;
+        for(int id = meet; backward[id] != ROOT; id = backward[id]) word[i++] = letter(id, backward[id]);
+
+        return word;
+    }
+
+    int letter(int from, int to){
+        //Returns the vertex of a letter that moves from one node to the other
+        long fromKey = nodes.key(from);
+        long toKey = nodes.key(to);
+        for(int a = 0; a < k; a++){
+            if(step(fromKey, a) == toKey) return automata.alphabet.symbol(a);
+        }
+        throw new IllegalStateException("No letter between nodes " + fromKey + " and " + toKey);
+    }
+
+    public static boolean represents(boolean[][] graph, int[] word){
+        /**
+         * Returns true if the word represents the graph: every vertex appears in it,
+         * and two vertices alternate in it exactly when they are adjacent.
+         */
+
+        int n = graph.length;
+        int[] count = new int[n];
+        for(int v : word) count[v]++;
+        for(int v = 0; v < n; v++){
+            if(count[v] == 0) return false;
+        }
+
+        for(int i = 0; i < n; i++){
+            for(int j = i + 1; j < n; j++){
+                //Alternating means no letter of the pair is followed by itself before the other letter appears
+                int last = -1;
+                boolean alternating = true;
+                for(int v : word){
+                    if(v != i && v != j) continue;
+                    if(v == last) alternating = false;
+                    last = v;
+                }
+                if(alternating != graph[i][j]) return false;
+            }
+        }
+        return true;
+    }
+
+    public static String toString(int[] word){
+        StringBuilder builder = new StringBuilder();
+        for(int v : word) builder.append(Alphabet.name(v));
+        return builder.toString();
+    }
+}